@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.paumard.devoxxfr2019.C_challenges.model.Actor;
+import org.paumard.devoxxfr2019.C_challenges.model.ActorRegistry;
+import org.paumard.devoxxfr2019.C_challenges.model.IndexedMovie;
+import org.paumard.devoxxfr2019.C_challenges.model.Movie;
+import org.paumard.devoxxfr2019.C_challenges.util.ActorIndex;
+import org.paumard.devoxxfr2019.C_challenges.util.CoStarPairs;
+import org.paumard.devoxxfr2019.C_challenges.util.PairCount;
+import org.paumard.devoxxfr2019.C_challenges.util.YearIndex;
+
+import java.util.Comparator;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The queries of ActorsAndMoviesChallenge, from actorsAndMovies01 to actorsAndMovies10.
+ * <p/>
+ * The _boxed benchmarks run the stream pipelines of the solutions on the Movie and Actor objects,
+ * on sequential or parallel streams. The other ones run the same queries on the int based model:
+ * IndexedMovie, YearIndex, ActorIndex and CoStarPairs. The ones that take an IndexedMovieData build
+ * their index in the measured method, so that they measure the building of the index plus the query,
+ * as the stream pipelines do. They are sequential, so they are only run once. Each benchmark returns
+ * its result, so that JMH consumes it.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ActorsAndMoviesBenchmark {
+
+    private static final Comparator<Actor> cmpActor = ActorRegistry.ACTOR_ORDER;
+
+    private static final Function<Movie, Stream<Map.Entry<Actor, Actor>>> movieToActors =
+            movie -> movie.actors().stream()
+                    .flatMap(actor1 -> movie.actors().stream()
+                            .filter(actor2 -> cmpActor.compare(actor1, actor2) < 0)
+                            .map(actor2 -> Map.entry(actor1, actor2)));
+
+    @Benchmark
+    public long actorsAndMovies01_boxed(MovieData data) {
+        return data.movies().flatMap(movie -> movie.actors().stream()).distinct().count();
+    }
+
+    @Benchmark
+    public long actorsAndMovies01_actorIds(MovieData data) {
+        return data.indexedMovies().flatMapToInt(IndexedMovie::actorStream).distinct().count();
+    }
+
+    @Benchmark
+    public long actorsAndMovies02_boxed(MovieData data) {
+        return data.movies().map(Movie::releaseYear).distinct().count();
+    }
+
+    @Benchmark
+    public long actorsAndMovies02_yearIndex(IndexedMovieData data) {
+        return YearIndex.of(data.indexedMovies).numberOfYears();
+    }
+
+    @Benchmark
+    public long actorsAndMovies03_boxed(MovieData data) {
+        IntSummaryStatistics statistics = data.movies().mapToInt(Movie::releaseYear).summaryStatistics();
+        return 10_000L * statistics.getMin() + statistics.getMax();
+    }
+
+    @Benchmark
+    public long actorsAndMovies03_yearIndex(IndexedMovieData data) {
+        YearIndex years = YearIndex.of(data.indexedMovies);
+        return 10_000L * years.firstYear() + years.lastYear();
+    }
+
+    @Benchmark
+    public Object actorsAndMovies04_boxed(MovieData data) {
+        return data.movies()
+                .collect(Collectors.groupingBy(Movie::releaseYear, Collectors.counting()))
+                .entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .get();
+    }
+
+    @Benchmark
+    public int actorsAndMovies04_yearIndex(IndexedMovieData data) {
+        return YearIndex.of(data.indexedMovies).yearWithMostMovies();
+    }
+
+    @Benchmark
+    public Object actorsAndMovies05_boxed(MovieData data) {
+        return data.movies().max(Comparator.comparing(movie -> movie.actors().size())).get();
+    }
+
+    @Benchmark
+    public Object actorsAndMovies05_actorIds(MovieData data) {
+        return data.indexedMovies().max(Comparator.comparingInt(IndexedMovie::numberOfActors)).get();
+    }
+
+    @Benchmark
+    public Object actorsAndMovies06_boxed(MovieData data) {
+        return data.movies().flatMap(movie -> movie.actors().stream())
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .get();
+    }
+
+    @Benchmark
+    public int actorsAndMovies06_actorIndex(IndexedMovieData data) {
+        return ActorIndex.of(data.indexedMovies, data.registry.size()).mostProlificActor();
+    }
+
+    @Benchmark
+    public Map.Entry<Integer, Map.Entry<Actor, Long>> actorsAndMovies07_boxed(MovieData data) {
+        Collector<Movie, ?, Map.Entry<Actor, Long>> collector =
+                Collectors.collectingAndThen(
+                        Collectors.flatMapping(
+                                movie -> movie.actors().stream(),
+                                Collectors.groupingBy(Function.identity(), Collectors.counting())),
+                        map -> map.entrySet().stream()
+                                .max(Map.Entry.comparingByValue())
+                                .get());
+        return data.movies()
+                .collect(Collectors.groupingBy(Movie::releaseYear, collector))
+                .entrySet().stream()
+                .max(Map.Entry.comparingByValue(Map.Entry.comparingByValue()))
+                .get();
+    }
+
+    /**
+     * The movies of each year are read from a YearIndex, and the movies of each actor in that year
+     * are counted in an array indexed by actor id, that is reset after each year.
+     */
+    @Benchmark
+    public Map.Entry<Integer, Map.Entry<Actor, Long>> actorsAndMovies07_yearIndex(IndexedMovieData data) {
+        YearIndex years = YearIndex.of(data.indexedMovies);
+        int[] numberOfMovies = new int[data.registry.size()];
+        int bestYear = 0, bestActor = -1, bestCount = 0;
+        for (int year = years.firstYear(); year <= years.lastYear(); year++) {
+            int[] movieIds = years.movies(year);
+            for (int movieId : movieIds) {
+                for (int actor : data.indexedMovies.get(movieId).actors()) {
+                    int count = ++numberOfMovies[actor];
+                    if (count > bestCount) {
+                        bestYear = year;
+                        bestActor = actor;
+                        bestCount = count;
+                    }
+                }
+            }
+            for (int movieId : movieIds) {
+                for (int actor : data.indexedMovies.get(movieId).actors()) {
+                    numberOfMovies[actor] = 0;
+                }
+            }
+        }
+        return Map.entry(bestYear, Map.entry(data.registry.actor(bestActor), (long) bestCount));
+    }
+
+    @Benchmark
+    public long actorsAndMovies08_boxed(MovieData data) {
+        long totalNumberOfPairs = data.movies().flatMap(movieToActors).count();
+        long numberOfUniquePairs = data.movies().flatMap(movieToActors).distinct().count();
+        return totalNumberOfPairs + numberOfUniquePairs;
+    }
+
+    @Benchmark
+    public long actorsAndMovies08_pairTable(MovieData data) {
+        CoStarPairs pairs = data.isParallel() ?
+                CoStarPairs.countInParallel(data.indexedMovies) :
+                CoStarPairs.count(data.indexedMovies);
+        return pairs.totalNumberOfPairs() + pairs.numberOfUniquePairs();
+    }
+
+    @Benchmark
+    public Object actorsAndMovies09_boxed(MovieData data) {
+        return data.movies()
+                .flatMap(movieToActors)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .get();
+    }
+
+    @Benchmark
+    public long actorsAndMovies09_pairTable(MovieData data) {
+        CoStarPairs pairs = data.isParallel() ?
+                CoStarPairs.countInParallel(data.indexedMovies) :
+                CoStarPairs.count(data.indexedMovies);
+        return pairs.maxPair();
+    }
+
+    @Benchmark
+    public Object actorsAndMovies10_boxed(MovieData data) {
+        Collector<Movie, ?, Map.Entry<Map.Entry<Actor, Actor>, Long>> collector =
+                Collectors.collectingAndThen(
+                        Collectors.flatMapping(
+                                movieToActors,
+                                Collectors.groupingBy(Function.identity(), Collectors.counting())),
+                        map -> map.entrySet().stream()
+                                .max(Map.Entry.comparingByValue())
+                                .get());
+        return data.movies()
+                .filter(movie -> movie.actors().size() > 1)
+                .collect(Collectors.groupingBy(Movie::releaseYear, collector))
+                .entrySet().stream()
+                .max(Map.Entry.comparingByValue(Map.Entry.comparingByValue()))
+                .get();
+    }
+
+    @Benchmark
+    public Map.Entry<Integer, List<PairCount>> actorsAndMovies10_pairTable(IndexedMovieData data) {
+        return CoStarPairs.topPairsPerYear(data.indexedMovies, 1)
+                .entrySet().stream()
+                .max(Comparator.comparing(entry -> entry.getValue().get(0).count()))
+                .get();
+    }
+}
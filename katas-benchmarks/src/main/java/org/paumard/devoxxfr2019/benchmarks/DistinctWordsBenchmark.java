@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.paumard.devoxxfr2019.B_streams.util.HyperLogLog;
+import org.paumard.devoxxfr2019.B_streams.util.StripedWordSet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The total and distinct counts of p_challenge02, on a parallel stream of 100 copies of the words
+ * of the sonnet, or of 10 copies of the 79k words allowed at Scrabble. They are computed with the
+ * TotalAndDistinct of the solution, that merges one HashSet per task, with a StripedWordSet,
+ * shared by all the threads, and with a HyperLogLog sketch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DistinctWordsBenchmark {
+
+    private static final Pattern SPLIT_PATTERN = Pattern.compile("[- .:,]+");
+
+    @State(Scope.Benchmark)
+    public static class Words {
+
+        @Param({"sonnet", "ospd"})
+        public String source;
+
+        List<String> words;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            if (source.equals("sonnet")) {
+                List<String> sonnetWords;
+                try (Stream<String> lines = Files.lines(MovieData.KATAS.resolve("files/Sonnet.txt"))) {
+                    sonnetWords = lines.map(String::toLowerCase)
+                            .flatMap(SPLIT_PATTERN::splitAsStream)
+                            .collect(Collectors.toList());
+                }
+                words = copies(100, sonnetWords);
+            } else {
+                ShakespeareData data = new ShakespeareData();
+                data.load();
+                words = copies(10, data.shakespeareWords);
+            }
+        }
+
+        private static List<String> copies(int n, List<String> words) {
+            return Collections.nCopies(n, words).stream().flatMap(List::stream).collect(Collectors.toList());
+        }
+    }
+
+    static class TotalAndDistinct {
+        private int count = 0;
+        private final Set<String> set = new HashSet<>();
+
+        void accumulate(String s) {
+            count++;
+            set.add(s);
+        }
+
+        void combine(TotalAndDistinct other) {
+            count += other.count;
+            set.addAll(other.set);
+        }
+    }
+
+    @Benchmark
+    public long hashSets(Words words) {
+        TotalAndDistinct totalAndDistinct =
+                words.words.parallelStream()
+                        .collect(TotalAndDistinct::new, TotalAndDistinct::accumulate, TotalAndDistinct::combine);
+        return totalAndDistinct.count + totalAndDistinct.set.size();
+    }
+
+    @Benchmark
+    public long stripedWordSet(Words words) {
+        StripedWordSet totalAndDistinct = words.words.parallelStream().collect(StripedWordSet.collector());
+        return totalAndDistinct.totalCount() + totalAndDistinct.size();
+    }
+
+    @Benchmark
+    public long hyperLogLog(Words words) {
+        HyperLogLog totalAndDistinct =
+                words.words.parallelStream().collect(HyperLogLog.collector(HyperLogLog.DEFAULT_PRECISION));
+        return totalAndDistinct.totalCount() + totalAndDistinct.distinctCount();
+    }
+}
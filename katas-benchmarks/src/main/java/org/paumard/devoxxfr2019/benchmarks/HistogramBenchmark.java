@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.paumard.devoxxfr2019.C_challenges.util.HistogramKernel;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.paumard.devoxxfr2019.benchmarks.ShakespeareData.scrabbleENDistribution;
+import static org.paumard.devoxxfr2019.benchmarks.ShakespeareData.scrabbleENScore;
+
+/**
+ * The histograms, blanks and scores with blanks of the 14k words Shakespeare could have played,
+ * computed with the lambdas of the shakespeare08 solution, and with HistogramKernel.
+ * Both return the sum of the scores with blanks of the words that need at most 2 blanks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistogramBenchmark {
+
+    private static final Function<String, Map<String, Long>> numberOfLettersUsed =
+            word -> word.chars().mapToObj(Character::toString)
+                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+    private static final Function<String, Long> numberOfBlanks =
+            word ->
+                    numberOfLettersUsed.apply(word)
+                            .entrySet().stream()
+                            .mapToLong(entry ->
+                                    Long.max(0, entry.getValue() - scrabbleENDistribution[entry.getKey().charAt(0) - 'a']))
+                            .sum();
+
+    private static final Function<String, Integer> scoreWithBlank =
+            word -> numberOfLettersUsed.apply(word)
+                    .entrySet().stream()
+                    .mapToInt(entry ->
+                            Integer.min(entry.getValue().intValue(), scrabbleENDistribution[entry.getKey().charAt(0) - 'a']) *
+                                    scrabbleENScore[entry.getKey().charAt(0) - 'a'])
+                    .sum();
+
+    @Benchmark
+    public long lambdas(ShakespeareData data) {
+        return data.playableWords.stream()
+                .filter(word -> numberOfBlanks.apply(word) <= 2)
+                .mapToLong(scoreWithBlank::apply)
+                .sum();
+    }
+
+    @Benchmark
+    public long histogramKernel(ShakespeareData data) {
+        byte[] histograms = HistogramKernel.histograms(data.playableArena);
+        int[] blanks = HistogramKernel.blanks(histograms, scrabbleENDistribution);
+        int[] scoresWithBlanks = HistogramKernel.scoresWithBlanks(histograms, scrabbleENScore, scrabbleENDistribution);
+        long sum = 0L;
+        for (int word = 0; word < blanks.length; word++) {
+            if (blanks[word] <= 2) {
+                sum += scoresWithBlanks[word];
+            }
+        }
+        return sum;
+    }
+}
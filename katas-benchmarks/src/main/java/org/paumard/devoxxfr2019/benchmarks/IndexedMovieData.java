@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.paumard.devoxxfr2019.C_challenges.model.ActorRegistry;
+import org.paumard.devoxxfr2019.C_challenges.model.IndexedMovie;
+import org.paumard.devoxxfr2019.C_challenges.util.MovieSnapshot;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The int based model of the movies database, loaded once per trial from the snapshot.
+ * The benchmarks that use it build their YearIndex or ActorIndex in the measured method,
+ * so that they are compared with the stream pipelines on the same work: building the index,
+ * then querying it.
+ * <p/>
+ * These queries are sequential, so this state has no streams parameter: they are not run twice.
+ */
+@State(Scope.Benchmark)
+public class IndexedMovieData {
+
+    ActorRegistry registry;
+    List<IndexedMovie> indexedMovies;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        MovieSnapshot snapshot = MovieSnapshot.openOrConvert(
+                MovieData.KATAS.resolve(MovieSnapshot.MOVIES), MovieData.KATAS.resolve(MovieSnapshot.SNAPSHOT));
+        registry = snapshot.registry();
+        indexedMovies = snapshot.indexedMovies();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.paumard.devoxxfr2019.C_challenges.model.ActorRegistry;
+import org.paumard.devoxxfr2019.C_challenges.model.IndexedMovie;
+import org.paumard.devoxxfr2019.C_challenges.model.Movie;
+import org.paumard.devoxxfr2019.C_challenges.util.MovieSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The movies database, loaded once per trial from the snapshot, so that the benchmarks
+ * only measure the queries. The streams parameter runs them on sequential or parallel streams.
+ * <p/>
+ * The katas-lambda-streams directory is read from the katas.dir system property, and defaults
+ * to ../katas-lambda-streams, that is the benchmarks being run from the katas-benchmarks directory.
+ */
+@State(Scope.Benchmark)
+public class MovieData {
+
+    static final Path KATAS = Paths.get(System.getProperty("katas.dir", "../katas-lambda-streams"));
+
+    @Param({"sequential", "parallel"})
+    public String streams;
+
+    Set<Movie> movies;
+    ActorRegistry registry;
+    List<IndexedMovie> indexedMovies;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        MovieSnapshot snapshot = MovieSnapshot.openOrConvert(
+                KATAS.resolve(MovieSnapshot.MOVIES), KATAS.resolve(MovieSnapshot.SNAPSHOT));
+        movies = snapshot.movies();
+        registry = snapshot.registry();
+        indexedMovies = snapshot.indexedMovies();
+    }
+
+    boolean isParallel() {
+        return "parallel".equals(streams);
+    }
+
+    Stream<Movie> movies() {
+        return isParallel() ? movies.parallelStream() : movies.stream();
+    }
+
+    Stream<IndexedMovie> indexedMovies() {
+        return isParallel() ? indexedMovies.parallelStream() : indexedMovies.stream();
+    }
+}
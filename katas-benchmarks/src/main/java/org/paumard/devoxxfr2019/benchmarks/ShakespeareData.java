@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.paumard.devoxxfr2019.C_challenges.util.Lexicon;
+import org.paumard.devoxxfr2019.C_challenges.util.WordArena;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The word lists of the Shakespeare challenge, loaded once per trial, with the same
+ * names as in ShakespeareChallenge: scrabbleWords are the words Shakespeare used,
+ * shakespeareWords the words allowed at Scrabble.
+ */
+@State(Scope.Benchmark)
+public class ShakespeareData {
+
+    static final Path SHAKESPEARE_WORDS = MovieData.KATAS.resolve("files/shakespeare/words.shakespeare.txt.gz");
+    static final Path OSPD = MovieData.KATAS.resolve("files/shakespeare/ospd.txt.gz");
+
+    static final int[] scrabbleENScore = {
+            // a, b, c, d, e, f, g, h, i, j, k, l, m, n, o, p,  q, r, s, t, u, v, w, x, y,  z
+               1, 3, 3, 2, 1, 4, 2, 4, 1, 8, 5, 1, 3, 1, 1, 3, 10, 1, 1, 1, 1, 4, 4, 8, 4, 10};
+
+    static final int[] scrabbleENDistribution = {
+            // a, b, c, d,  e, f, g, h, i, j, k, l, m, n, o, p, q, r, s, t, u, v, w, x, y, z
+               9, 2, 2, 1, 12, 2, 3, 2, 9, 1, 1, 4, 2, 6, 8, 2, 1, 6, 4, 6, 4, 2, 2, 1, 2, 1};
+
+    Set<String> scrabbleWords;
+    Lexicon scrabbleLexicon;
+    List<String> shakespeareWords;
+    List<String> playableWords;
+    WordArena playableArena;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        scrabbleWords = Set.copyOf(read(SHAKESPEARE_WORDS));
+        scrabbleLexicon = Lexicon.load(SHAKESPEARE_WORDS);
+        shakespeareWords = read(OSPD);
+        playableWords = shakespeareWords.stream().filter(scrabbleWords::contains).collect(Collectors.toList());
+        playableArena = WordArena.of(playableWords.toArray(new String[0]));
+    }
+
+    private static List<String> read(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path);
+             GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(gzipInputStream))) {
+            return reader.lines().map(String::toLowerCase).distinct().collect(Collectors.toList());
+        }
+    }
+}
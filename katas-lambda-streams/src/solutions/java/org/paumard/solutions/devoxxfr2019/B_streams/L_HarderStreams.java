@@ -19,6 +19,7 @@ package org.paumard.solutions.devoxxfr2019.B_streams;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.paumard.devoxxfr2019.B_streams.util.Tokenizer;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -184,6 +185,27 @@ public class L_HarderStreams {
                         "increase", "niggarding", "ornament", "substantial"));
     }
 
+    /**
+     * The same list with a lower case Tokenizer, that folds the case of the line in its own buffer,
+     * and only creates a String for the distinct words.
+     */
+    @Test
+    public void l_harderStream07_tokenizer() {
+
+        List<String> output =
+                reader.lines()
+                        .collect(Tokenizer.distinct(Tokenizer.of("- .:,").lowerCase()))
+                        .stream()
+                        .filter(s -> s.length() >= 8)
+                        .sorted()
+                        .collect(Collectors.toList());
+
+        assertThat(output).isEqualTo(
+                Arrays.asList(
+                        "abundance", "beauty's", "contracted", "creatures",
+                        "increase", "niggarding", "ornament", "substantial"));
+    }
+
     /**
      * Read the words from the text file, and create a list containing the words
      * of length 8 or longer, converted to lower case, and sorted reverse alphabetically.
@@ -19,11 +19,17 @@ package org.paumard.solutions.devoxxfr2019.B_streams;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.paumard.devoxxfr2019.B_streams.util.MappedLines;
+import org.paumard.devoxxfr2019.B_streams.util.Tokenizer;
+import org.paumard.devoxxfr2019.B_streams.util.WordCounter;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
@@ -145,6 +151,114 @@ public class O_HarderCollectors {
         assertThat(result.get("self")).isEqualTo(3L);
     }
 
+    /**
+     * The same count with a WordCounter, that splits the bytes of the file without a regular expression,
+     * counts the words in a table of long counts, and spills this table to disk when it exceeds its memory
+     * budget. Here the budget of the second counter is small enough to spill the sonnet a few times.
+     */
+    @Test
+    public void o_harderCollector03_wordCounter() throws IOException {
+
+        Map<String, Long> result;
+        try (WordCounter counter = WordCounter.of(WordCounter.SPLIT_SEPARATORS)) {
+            result = counter.countWords(Paths.get("files/Sonnet.txt")).toMap();
+        }
+
+        Map<String, Long> spilledResult;
+        int numberOfSpills;
+        try (WordCounter counter = WordCounter.of(WordCounter.SPLIT_SEPARATORS, 2_500L, Paths.get("target"))) {
+            spilledResult = counter.countWords(Paths.get("files/Sonnet.txt")).toMap();
+            numberOfSpills = counter.numberOfSpills();
+        }
+
+        String text = "\n,From--fairest,\r\n::\r\ncreatures fairest\rwe\n";
+        Map<String, Long> expected =
+                new BufferedReader(new StringReader(text)).lines()
+                        .flatMap(SPLIT_PATTERN::splitAsStream)
+                        .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        Map<String, Long> edgeCases;
+        try (WordCounter counter = WordCounter.of(WordCounter.SPLIT_SEPARATORS)) {
+            edgeCases = counter.countWords(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))).toMap();
+        }
+
+        assertThat(result).hasSize(87);
+        assertThat(result.get("tender")).isEqualTo(2L);
+        assertThat(result.get("the")).isEqualTo(6L);
+        assertThat(result.get("churl")).isEqualTo(1L);
+        assertThat(result.get("thine")).isEqualTo(2L);
+        assertThat(result.get("world")).isEqualTo(1L);
+        assertThat(result.get("thy")).isEqualTo(4L);
+        assertThat(result.get("self")).isEqualTo(3L);
+        assertThat(numberOfSpills).isGreaterThan(0);
+        assertThat(spilledResult).isEqualTo(result);
+        assertThat(edgeCases).isEqualTo(expected).containsEntry("", 2L).containsEntry("fairest", 2L);
+    }
+
+    /**
+     * The same count on a parallel stream of the lines of the memory mapped file.
+     */
+    @Test
+    public void o_harderCollector03_mappedLines() throws IOException {
+
+        Map<String, Long> result;
+        try (Stream<String> lines = MappedLines.lines(Paths.get("files/Sonnet.txt"))) {
+            result = lines.parallel()
+                    .flatMap(SPLIT_PATTERN::splitAsStream)
+                    .collect(Collectors.groupingByConcurrent(
+                            Function.identity(), Collectors.counting()
+                    ));
+        }
+
+        assertThat(result).hasSize(87);
+        assertThat(result.get("tender")).isEqualTo(2L);
+        assertThat(result.get("the")).isEqualTo(6L);
+        assertThat(result.get("churl")).isEqualTo(1L);
+        assertThat(result.get("thine")).isEqualTo(2L);
+        assertThat(result.get("world")).isEqualTo(1L);
+        assertThat(result.get("thy")).isEqualTo(4L);
+        assertThat(result.get("self")).isEqualTo(3L);
+        assertThat(MappedLines.lines(Paths.get("files/Sonnet.txt")).collect(Collectors.toList()))
+                .isEqualTo(Files.readAllLines(Paths.get("files/Sonnet.txt")));
+
+        // a file whose lines are only ended by '\r' is split too
+        Path carriageReturns = Paths.get("target/carriage-returns.txt");
+        Files.write(carriageReturns, IntStream.range(0, 5_000).mapToObj(i -> "line " + i)
+                .collect(Collectors.joining("\r")).getBytes(StandardCharsets.UTF_8));
+        assertThat(MappedLines.lines(carriageReturns).spliterator().trySplit()).isNotNull();
+        assertThat(MappedLines.lines(carriageReturns).parallel().collect(Collectors.toList()))
+                .isEqualTo(Files.readAllLines(carriageReturns));
+    }
+
+    /**
+     * The same count with a Tokenizer, that gives each word as a view on the line, and a collector
+     * that only creates a String for the first occurrence of a word.
+     */
+    @Test
+    public void o_harderCollector03_tokenizer() {
+
+        Map<String, Long> result =
+                reader.lines()
+                        .parallel()
+                        .collect(Tokenizer.counting(Tokenizer.of(WordCounter.SPLIT_SEPARATORS)));
+
+        List<String> lines = List.of("", ",From--fairest,", "::", "creatures fairest", "we");
+        Map<String, Long> expected =
+                lines.stream()
+                        .flatMap(SPLIT_PATTERN::splitAsStream)
+                        .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        assertThat(result).hasSize(87);
+        assertThat(result.get("tender")).isEqualTo(2L);
+        assertThat(result.get("the")).isEqualTo(6L);
+        assertThat(result.get("churl")).isEqualTo(1L);
+        assertThat(result.get("thine")).isEqualTo(2L);
+        assertThat(result.get("world")).isEqualTo(1L);
+        assertThat(result.get("thy")).isEqualTo(4L);
+        assertThat(result.get("self")).isEqualTo(3L);
+        assertThat(lines.stream().collect(Tokenizer.counting(Tokenizer.of(WordCounter.SPLIT_SEPARATORS))))
+                .isEqualTo(expected);
+    }
+
     /**
      * Gather all the letters used to write the Sonnet in lower case, and find one of the least used.
      * <p/>
@@ -20,6 +20,13 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.paumard.devoxxfr2019.B_streams.model.Person;
+import org.paumard.devoxxfr2019.B_streams.util.Extrema;
+import org.paumard.devoxxfr2019.B_streams.util.HeavyHitters;
+import org.paumard.devoxxfr2019.B_streams.util.HyperLogLog;
+import org.paumard.devoxxfr2019.B_streams.util.IntRuns;
+import org.paumard.devoxxfr2019.B_streams.util.MajorityVote;
+import org.paumard.devoxxfr2019.B_streams.util.Runs;
+import org.paumard.devoxxfr2019.B_streams.util.StripedWordSet;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -35,6 +42,7 @@ import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
 
 public class P_Challenges {
 
@@ -122,6 +130,52 @@ public class P_Challenges {
         assertThat(totalAndDistinct.getTotalCount()).isEqualTo(10700);
     }
 
+    /**
+     * The same exact counts with a StripedWordSet, that all the threads fill concurrently,
+     * so that no set is copied when the tasks are joined.
+     */
+    @Test
+    public void p_challenge02_stripedWordSet() {
+
+        List<String> allWords = sonnetReader.lines()
+                .map(String::toLowerCase)
+                .flatMap(SPLIT_PATTERN::splitAsStream)
+                .collect(Collectors.toList());
+
+        StripedWordSet totalAndDistinct =
+                Collections.nCopies(100, allWords)
+                        .parallelStream()
+                        .flatMap(List::stream)
+                        .collect(StripedWordSet.collector());
+
+        assertThat(totalAndDistinct.size()).isEqualTo(81);
+        assertThat(totalAndDistinct.totalCount()).isEqualTo(10700L);
+        assertThat(totalAndDistinct.toSet()).isEqualTo(new HashSet<>(allWords));
+    }
+
+    /**
+     * The same counts with a HyperLogLog sketch, that estimates the number of distinct words
+     * in 16 KB, whatever the number of words, and whose sketches are merged register by register.
+     */
+    @Test
+    public void p_challenge02_hyperLogLog() {
+
+        List<String> allWords = sonnetReader.lines()
+                .map(String::toLowerCase)
+                .flatMap(SPLIT_PATTERN::splitAsStream)
+                .collect(Collectors.toList());
+
+        HyperLogLog totalAndDistinct =
+                Collections.nCopies(100, allWords)
+                        .parallelStream()
+                        .flatMap(List::stream)
+                        .collect(HyperLogLog.collector(HyperLogLog.DEFAULT_PRECISION));
+
+        assertThat(totalAndDistinct.distinctCount())
+                .isCloseTo(81L, withinPercentage(300 * totalAndDistinct.standardError()));
+        assertThat(totalAndDistinct.totalCount()).isEqualTo(10700L);
+    }
+
 
     /**
      * Denormalize this map. The input is a map whose keys are the number of legs of an animal
@@ -274,6 +328,26 @@ public class P_Challenges {
         assertThat(result).containsExactly("charlie", "foxtrot");
     }
 
+    /**
+     * The same longest words with Extrema.maxAllByInt(), that generalizes Longest to any int key,
+     * the shortest words, and the three longest words, the ties being kept in the encounter order.
+     */
+    @Test
+    public void p_challenge05_extrema() {
+
+        List<String> words = Arrays.asList(
+                "alfa", "bravo", "charlie", "delta",
+                "echo", "foxtrot", "golf", "hotel");
+
+        List<String> result = words.parallelStream().collect(Extrema.maxAllByInt(String::length));
+        List<String> shortest = words.parallelStream().collect(Extrema.minAllByInt(String::length));
+        List<String> threeLongest = words.parallelStream().collect(Extrema.topKByInt(String::length, 3));
+
+        assertThat(result).containsExactly("charlie", "foxtrot");
+        assertThat(shortest).containsExactly("alfa", "echo", "golf");
+        assertThat(threeLongest).containsExactly("charlie", "foxtrot", "bravo");
+    }
+
     /**
      * Given a string, split it into a list of strings consisting of
      * consecutive characters from the original string. Note: this is
@@ -299,6 +373,31 @@ public class P_Challenges {
         assertThat(result).containsExactly("aaaaa", "bb", "cccc", "d", "eeeeee", "aaa", "fff");
     }
 
+    /**
+     * The same runs with a run-length encoding of the chars of the parallel stream, that does not
+     * need random access to the input, and whose combiner stitches the runs cut by a split.
+     * Runs.grouping() does the same for any stream, each run being a value and a length.
+     */
+    @Test
+    public void p_challenge06_runs() {
+
+        String input = "aaaaabbccccdeeeeeeaaafff";
+
+        IntRuns runs = input.chars().parallel()
+                .collect(IntRuns::new, IntRuns::accept, IntRuns::combine);
+
+        List<String> result =
+                input.chars().parallel()
+                        .mapToObj(Character::toString)
+                        .collect(Runs.grouping())
+                        .stream()
+                        .map(run -> run.value().repeat(Math.toIntExact(run.length())))
+                        .collect(Collectors.toList());
+
+        assertThat(runs.toStrings()).containsExactly("aaaaa", "bb", "cccc", "d", "eeeeee", "aaa", "fff");
+        assertThat(result).containsExactly("aaaaa", "bb", "cccc", "d", "eeeeee", "aaa", "fff");
+    }
+
     /**
      * Given a parallel stream of strings, collect them into a collection in reverse order.
      * Since the stream is parallel, you MUST write a proper combiner function in order to get
@@ -366,6 +465,32 @@ public class P_Challenges {
         assertThat(result2).isEmpty();
     }
 
+    /**
+     * The same majorities with a Boyer-Moore vote, that does not box the elements, checked by
+     * a second pass, and the values that appear in more than a third of the arrays, found with
+     * a Misra-Gries summary of 2 counters.
+     */
+    @Test
+    public void p_challenge08_majorityVote() {
+
+        int[] array1 = {13, 13, 24, 35, 24, 24, 35, 24, 24};
+        int[] array2 = {13, 13, 24, 35, 24, 24, 35, 24};
+
+        OptionalInt result1 = MajorityVote.majority(array1);
+        OptionalInt result2 = MajorityVote.majority(array2);
+
+        MajorityVote vote = IntStream.of(array1).parallel()
+                .collect(MajorityVote::new, MajorityVote::accept, MajorityVote::combine);
+
+        assertThat(result1).isEqualTo(OptionalInt.of(24));
+        assertThat(result2).isEmpty();
+        assertThat(vote.candidate()).isEqualTo(OptionalLong.of(24L));
+        assertThat(vote.count()).isEqualTo(9L);
+        assertThat(HeavyHitters.frequentValues(array1, 2)).containsExactly(24);
+        assertThat(HeavyHitters.frequentValues(array2, 1)).isEmpty();
+        assertThat(HeavyHitters.frequentValues(array2, 3)).containsExactly(24);
+    }
+
 
     /**
      * Create the following String with the people from the people.txt file.
@@ -18,25 +18,45 @@ package org.paumard.solutions.devoxxfr2019.C_challenges;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.paumard.devoxxfr2019.B_streams.util.Extrema;
 import org.paumard.devoxxfr2019.C_challenges.model.Actor;
+import org.paumard.devoxxfr2019.C_challenges.model.ActorRegistry;
+import org.paumard.devoxxfr2019.C_challenges.model.IndexedMovie;
 import org.paumard.devoxxfr2019.C_challenges.model.Movie;
+import org.paumard.devoxxfr2019.C_challenges.util.ActorIndex;
+import org.paumard.devoxxfr2019.C_challenges.util.CoStarPairs;
+import org.paumard.devoxxfr2019.C_challenges.util.MovieParser;
+import org.paumard.devoxxfr2019.C_challenges.util.MovieSnapshot;
+import org.paumard.devoxxfr2019.C_challenges.util.PairCount;
+import org.paumard.devoxxfr2019.C_challenges.util.PairCountTable;
+import org.paumard.devoxxfr2019.C_challenges.util.YearIndex;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.IntSummaryStatistics;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 
 /**
@@ -49,6 +69,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class ActorsAndMoviesChallenge {
 
     private Set<Movie> movies;
+    private ActorRegistry registry;
+    private List<IndexedMovie> indexedMovies;
 
 
     /**
@@ -60,6 +82,33 @@ public class ActorsAndMoviesChallenge {
         assertThat(movies).hasSize(13891);
     }
 
+    /**
+     * The movies can also be read with the byte based parser, that decodes the file in parallel
+     * and returns a stream that splits evenly.
+     */
+    @Test
+    public void actorsAndMovies00_parser() throws IOException {
+
+        Spliterator<Movie> parsedMovies = MovieParser.movies(MovieSnapshot.MOVIES).spliterator();
+
+        Path lines = Files.createTempFile(Paths.get("target"), "movies", ".txt.gz");
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(lines))) {
+            outputStream.write("Alpha (1990)/Doe, John\rBravo (1991)/Roe, Jane\r\n\nCharlie (1992)/Poe\n"
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        List<Movie> moviesOfLines;
+        try {
+            moviesOfLines = MovieParser.parse(lines);
+        } finally {
+            Files.delete(lines);
+        }
+
+        assertThat(parsedMovies.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED)).isTrue();
+        assertThat(StreamSupport.stream(parsedMovies, true).mapToInt(movie -> movie.actors().size()).sum())
+                .isEqualTo(movies.stream().mapToInt(movie -> movie.actors().size()).sum());
+        assertThat(moviesOfLines).extracting(Movie::title).containsExactly("Alpha", "Bravo", "Charlie");
+    }
+
     /**
      * From the set of movies, it should not be too hard to count the number of actors.
      */
@@ -71,6 +120,18 @@ public class ActorsAndMoviesChallenge {
         assertThat(numberOfActors).isEqualTo(168727L);
     }
 
+    /**
+     * The same, on the movies that hold the ids of their actors: no String is hashed anymore.
+     */
+    @Test
+    public void actorsAndMovies01_actorIds() {
+
+        long numberOfActors = indexedMovies.stream().flatMapToInt(IndexedMovie::actorStream).distinct().count();
+
+        assertThat(numberOfActors).isEqualTo(168727L);
+        assertThat(registry.size()).isEqualTo(168727);
+    }
+
     /**
      * First, count the number of release years in this file.
      */
@@ -120,18 +181,43 @@ public class ActorsAndMoviesChallenge {
         assertThat(numberOfMovies).isEqualTo(678L);
     }
 
+    /**
+     * The questions 02, 03 and 04, answered by an index of the movies by year: a histogram of
+     * the number of movies, keyed by year. No Integer is created, and a range of years is read
+     * in constant time.
+     */
+    @Test
+    public void actorsAndMovies04_yearIndex() {
+
+        YearIndex years = YearIndex.of(indexedMovies);
+
+        int year = years.yearWithMostMovies();
+        long numberOfMovies = years.numberOfMovies(year);
+
+        assertThat(years.numberOfYears()).isEqualTo(76);
+        assertThat(years.firstYear()).isEqualTo(1916);
+        assertThat(years.lastYear()).isEqualTo(2004);
+        assertThat(year).isEqualTo(1997);
+        assertThat(numberOfMovies).isEqualTo(678L);
+        assertThat(years.numberOfMoviesBetween(1916, 2004)).isEqualTo(13891);
+        assertThat(years.moviesBetween(1996, 1997)).hasSize(years.numberOfMovies(1996) + 678);
+    }
+
     /**
      * Fourth, find the movie with the greatest number of actors in it. Hint: there is only one.
      */
     @Test
     public void actorsAndMovies05() {
 
-        Movie movieWithMostActors =
-                movies.stream().max(Comparator.comparing(movie -> movie.actors().size())).get();
+        List<Movie> moviesWithMostActors =
+                movies.stream().collect(Extrema.maxAllByInt(movie -> movie.actors().size()));
+
+        Movie movieWithMostActors = moviesWithMostActors.get(0);
 
         int maxNumberOfActors = movieWithMostActors.actors().size();
         String title = movieWithMostActors.title();
 
+        assertThat(moviesWithMostActors).hasSize(1);
         assertThat(maxNumberOfActors).isEqualTo(238);
         assertThat(title).isEqualTo("Malcolm X");
     }
@@ -158,6 +244,52 @@ public class ActorsAndMoviesChallenge {
         assertThat(numberOfMoviePlayed).isEqualTo(90L);
     }
 
+    /**
+     * The same, with the ids of the actors: the grouping becomes an array of counters indexed by actor id.
+     */
+    @Test
+    public void actorsAndMovies06_actorIds() {
+
+        int[] numberOfMovies = new int[registry.size()];
+        indexedMovies.forEach(movie -> movie.actorStream().forEach(id -> numberOfMovies[id]++));
+
+        int mostSeenActorId =
+                IntStream.range(0, numberOfMovies.length)
+                        .reduce((id1, id2) -> numberOfMovies[id1] >= numberOfMovies[id2] ? id1 : id2)
+                        .getAsInt();
+
+        Actor mostSeenActor = registry.actor(mostSeenActorId);
+        long numberOfMoviePlayed = numberOfMovies[mostSeenActorId];
+
+        assertThat(mostSeenActor).isEqualTo(new Actor("Welker", "Frank"));
+        assertThat(numberOfMoviePlayed).isEqualTo(90L);
+    }
+
+    /**
+     * The same, with an inverted index from the actors to their movies. Once the index is built,
+     * the filmography of an actor, or the movies two actors played together in, are read without
+     * scanning the movies.
+     */
+    @Test
+    public void actorsAndMovies06_actorIndex() {
+
+        ActorIndex index = ActorIndex.of(indexedMovies, registry.size());
+
+        Actor mostSeenActor = registry.actor(index.mostProlificActor());
+        long numberOfMoviePlayed = index.numberOfMovies(index.mostProlificActor());
+
+        assertThat(mostSeenActor).isEqualTo(new Actor("Welker", "Frank"));
+        assertThat(numberOfMoviePlayed).isEqualTo(90L);
+
+        int welker = registry.id("Welker", "Frank");
+        assertThat(index.filmography(welker)).hasSize(90);
+        assertThat(Arrays.stream(index.filmography(welker)))
+                .allMatch(movieId -> indexedMovies.get(movieId).hasActor(welker));
+        assertThat(index.actorsWithAtLeast(90)).containsExactly(welker);
+        assertThat(index.numberOfCoAppearances(registry.id("Howard", "Clint"), registry.id("Howard", "Rance")))
+                .isEqualTo(15);
+    }
+
     /**
      * A little harder: try to find the actor that played in the greatest number of movies
      * during a year.
@@ -250,6 +382,22 @@ public class ActorsAndMoviesChallenge {
         assertThat(numberOfUniquePairs).isEqualTo(7487873L);
     }
 
+    /**
+     * The same, without creating any Map.Entry: each pair of actor ids is encoded in a long,
+     * and counted in a primitive hash table.
+     */
+    @Test
+    public void actorsAndMovies08_pairTable() {
+
+        CoStarPairs pairs = CoStarPairs.count(indexedMovies);
+
+        long totalNumberOfPairs = pairs.totalNumberOfPairs();
+        long numberOfUniquePairs = pairs.numberOfUniquePairs();
+
+        assertThat(totalNumberOfPairs).isEqualTo(7616029L);
+        assertThat(numberOfUniquePairs).isEqualTo(7487873L);
+    }
+
     /**
      * The (almost) last step is to find the two actors that played the most together. Look carefully at the code
      * you are writing. Since there are 170k actors in the base, that could make 14 billions of potential couples.
@@ -290,6 +438,46 @@ public class ActorsAndMoviesChallenge {
         assertThat(actor2).isEqualTo(new Actor("Howard", "Rance"));
     }
 
+    /**
+     * The same, with the primitive pair table. Since the ids follow the alphabetical order of
+     * the actors, the first actor of a pair is the first one alphabetically.
+     */
+    @Test
+    public void actorsAndMovies09_pairTable() {
+
+        CoStarPairs pairs = CoStarPairs.count(indexedMovies);
+
+        long number = pairs.maxCount();
+        Actor actor1 = registry.actor(PairCountTable.first(pairs.maxPair()));
+        Actor actor2 = registry.actor(PairCountTable.second(pairs.maxPair()));
+
+        assertThat(number).isEqualTo(15L);
+        assertThat(actor1).isEqualTo(new Actor("Howard", "Clint"));
+        assertThat(actor2).isEqualTo(new Actor("Howard", "Rance"));
+    }
+
+    /**
+     * The same, with the pairs counted in parallel. Each fork/join task counts its chunk of movies
+     * in its own shards, that are then merged shard by shard.
+     */
+    @Test
+    public void actorsAndMovies09_parallelPairTable() {
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        CoStarPairs pairs = CoStarPairs.countInParallel(indexedMovies, pool);
+        pool.shutdown();
+
+        long number = pairs.maxCount();
+        Actor actor1 = registry.actor(PairCountTable.first(pairs.maxPair()));
+        Actor actor2 = registry.actor(PairCountTable.second(pairs.maxPair()));
+
+        assertThat(pairs.totalNumberOfPairs()).isEqualTo(7616029L);
+        assertThat(pairs.numberOfUniquePairs()).isEqualTo(7487873L);
+        assertThat(number).isEqualTo(15L);
+        assertThat(actor1).isEqualTo(new Actor("Howard", "Clint"));
+        assertThat(actor2).isEqualTo(new Actor("Howard", "Rance"));
+    }
+
     /**
      * The (real) last step is to find the two actors that played the most together during a year. The approach is the
      * same as previously: try to create a collector and use it as a downstream collector.
@@ -341,6 +529,41 @@ public class ActorsAndMoviesChallenge {
         assertThat(actor2).isEqualTo(new Actor("Webster", "Derek"));
     }
 
+    /**
+     * The same, year by year, in one primitive pair table reused for each year, keeping only
+     * the 10 best pairs of each year instead of the map of all the pairs.
+     * <p/>
+     * Several pairs played 5 times together in 1995: the groupingBy() version returns one of them,
+     * depending on the iteration order of its HashMap, whereas the top pairs are sorted by count,
+     * then by actor ids.
+     */
+    @Test
+    public void actorsAndMovies10_topPairsPerYear() {
+
+        SortedMap<Integer, List<PairCount>> topPairsPerYear = CoStarPairs.topPairsPerYear(indexedMovies, 10);
+
+        Map.Entry<Integer, List<PairCount>> entry =
+                topPairsPerYear.entrySet().stream()
+                        .max(Comparator.comparing(e -> e.getValue().get(0).count()))
+                        .get();
+
+        int year = entry.getKey();
+        long number = entry.getValue().get(0).count();
+        List<Map.Entry<Actor, Actor>> bestPairs =
+                entry.getValue().stream()
+                        .filter(pair -> pair.count() == number)
+                        .map(pair -> Map.entry(registry.actor(pair.first()), registry.actor(pair.second())))
+                        .collect(Collectors.toList());
+
+        assertThat(year).isEqualTo(1995);
+        assertThat(number).isEqualTo(5L);
+        assertThat(bestPairs).contains(Map.entry(new Actor("Ingham", "Barrie"), new Actor("Webster", "Derek")));
+        assertThat(entry.getValue()).isSortedAccordingTo(PairCount.BEST_FIRST);
+        assertThat(topPairsPerYear.values()).noneMatch(List::isEmpty);
+        assertThatThrownBy(() -> CoStarPairs.topPairsPerYear(indexedMovies, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
 
 // ========================================================
 // END OF EXERCISES
@@ -350,41 +573,11 @@ public class ActorsAndMoviesChallenge {
     @Before
     public void z_setupData() {
 
-        Function<String, Stream<Movie>> toMovie =
-                line -> {
-                    String[] elements = line.split("/");
-                    String title = elements[0].substring(0, elements[0].lastIndexOf("(")).trim();
-                    String releaseYear = elements[0].substring(elements[0].lastIndexOf("(") + 1, elements[0].lastIndexOf(")"));
-                    if (releaseYear.contains(",")) {
-                        // Movies with a coma in their title are discarded
-                        return Stream.empty();
-                    }
-                    Movie movie = new Movie(title, Integer.valueOf(releaseYear));
-
-
-                    for (int i = 1; i < elements.length; i++) {
-                        String[] name = elements[i].split(", ");
-                        String lastName = name[0].trim();
-                        String firstName = "";
-                        if (name.length > 1) {
-                            firstName = name[1].trim();
-                        }
-
-                        Actor actor = new Actor(lastName, firstName);
-                        movie.addActor(actor);
-                    }
-                    return Stream.of(movie);
-                };
-
-        try (FileInputStream fis = new FileInputStream("files/movies/movies-mpaa.txt.gz");
-             GZIPInputStream gzis = new GZIPInputStream(fis);
-             InputStreamReader reader = new InputStreamReader(gzis);
-             BufferedReader bufferedReader = new BufferedReader(reader);
-             Stream<String> lines = bufferedReader.lines();
-        ) {
-
-            movies = lines.flatMap(toMovie).collect(Collectors.toSet());
-
+        try {
+            MovieSnapshot snapshot = MovieSnapshot.openOrConvert(MovieSnapshot.MOVIES, MovieSnapshot.SNAPSHOT);
+            movies = snapshot.movies();
+            registry = snapshot.registry();
+            indexedMovies = snapshot.indexedMovies();
         } catch (IOException e) {
             System.out.println("e.getMessage() = " + e.getMessage());
         }
@@ -18,13 +18,26 @@ package org.paumard.solutions.devoxxfr2019.C_challenges;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.paumard.devoxxfr2019.B_streams.util.Extrema;
+import org.paumard.devoxxfr2019.C_challenges.util.AnagramIndex;
+import org.paumard.devoxxfr2019.C_challenges.util.Lexicon;
+import org.paumard.devoxxfr2019.C_challenges.util.Memoizer;
+import org.paumard.devoxxfr2019.C_challenges.util.RackSolver;
+import org.paumard.devoxxfr2019.C_challenges.util.ScoringRules;
+import org.paumard.devoxxfr2019.C_challenges.util.TopScores;
+import org.paumard.devoxxfr2019.C_challenges.util.WordScore;
+import org.paumard.devoxxfr2019.C_challenges.util.WordScoreTable;
 
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
@@ -53,6 +66,8 @@ public class ShakespeareChallenge {
 
     private Set<String> scrabbleWords;
     private Set<String> shakespeareWords;
+    private Lexicon scrabbleLexicon;
+    private WordScoreTable playableWords;
 
     /**
      * This first test is free and is only here to make sure that everything is ok with the data files.
@@ -78,6 +93,26 @@ public class ShakespeareChallenge {
         assertThat(number).isEqualTo(14277L);
     }
 
+    /**
+     * The same count, with the words Shakespeare used stored in a Lexicon rather than in a HashSet.
+     */
+    @Test
+    public void shakespeare02_lexicon() {
+
+        long number =
+                shakespeareWords.stream()
+                        .filter(scrabbleLexicon::contains)
+                        .count();
+
+        assertThat(scrabbleLexicon.size()).isEqualTo(23688);
+        assertThat(number).isEqualTo(14277L);
+        assertThat(scrabbleLexicon.contains("whizzing")).isTrue();
+        assertThat(scrabbleLexicon.contains("whizzin")).isFalse();
+        assertThat(scrabbleLexicon.contains(new StringBuilder("zephyrs"))).isTrue();
+        assertThat(scrabbleLexicon.wordsWithPrefix("whizz")).allMatch(word -> word.startsWith("whizz")).contains("whizzing");
+        assertThat(scrabbleLexicon.words()).isSorted().hasSize(23688).containsAll(scrabbleWords);
+    }
+
     /**
      * Second, compute a function that can compute the score of a given word.
      */
@@ -100,21 +135,56 @@ public class ShakespeareChallenge {
         Function<String, Integer> score =
                 word -> word.chars().map(letter -> scrabbleENScore[letter - 'a']).sum();
 
-        Map.Entry<Integer, List<String>> wordsyScore =
+        List<String> bestWords =
                 shakespeareWords.stream()
                         .filter(scrabbleWords::contains)
-                        .collect(Collectors.groupingBy(score))
-                        .entrySet().stream()
-                        .max(Map.Entry.comparingByKey())
-                        .get();
+                        .collect(Extrema.maxAllByInt(score::apply));
 
-        int bestScore = wordsyScore.getKey();
-        List<String> bestWords = wordsyScore.getValue();
+        int bestScore = score.apply(bestWords.get(0));
 
         assertThat(bestScore).isEqualTo(33);
         assertThat(bestWords).containsExactly("whizzing");
     }
 
+    /**
+     * The same query on the precomputed scores of the words Shakespeare could have played.
+     */
+    @Test
+    public void shakespeare04_wordScores() {
+
+        int bestScore = playableWords.wordIds().map(playableWords::score).max().getAsInt();
+        List<String> bestWords =
+                playableWords.wordIds()
+                        .filter(word -> playableWords.score(word) == bestScore)
+                        .mapToObj(playableWords::word)
+                        .collect(Collectors.toList());
+
+        assertThat(bestScore).isEqualTo(33);
+        assertThat(bestWords).containsExactly("whizzing");
+    }
+
+    /**
+     * The same query, in parallel, with a collector that only keeps the words of the best score.
+     */
+    @Test
+    public void shakespeare04_topScores() {
+
+        ToIntFunction<String> score =
+                word -> word.chars().map(letter -> scrabbleENScore[letter - 'a']).sum();
+
+        SortedMap<Integer, List<String>> bestWordsByScore =
+                shakespeareWords.parallelStream()
+                        .filter(scrabbleWords::contains)
+                        .collect(TopScores.collector(score, 1));
+
+        int bestScore = bestWordsByScore.firstKey();
+        List<String> bestWords = bestWordsByScore.get(bestScore);
+
+        assertThat(bestWordsByScore).hasSize(1);
+        assertThat(bestScore).isEqualTo(33);
+        assertThat(bestWords).containsExactly("whizzing");
+    }
+
     /**
      * The best word looks a little suspect, is it really possible to write
      * such a word, given that there is only on 'z' available in the game?
@@ -138,6 +208,31 @@ public class ShakespeareChallenge {
                         Map.entry("z", 2L), Map.entry("n", 1L), Map.entry("g", 1L));
     }
 
+    /**
+     * Two words with the same histogram are anagrams. Index the words Shakespeare used by their histogram,
+     * to find the anagrams of a word, and the words that can be written with a set of letters.
+     */
+    @Test
+    public void shakespeare05_anagramIndex() {
+
+        AnagramIndex anagrams = AnagramIndex.of(scrabbleWords);
+
+        List<String> largestClass =
+                anagrams.anagramClasses()
+                        .max(Comparator.comparingInt(List::size))
+                        .get();
+
+        assertThat(anagrams.size()).isEqualTo(23688);
+        assertThat(anagrams.anagrams("least")).containsExactly("least", "stale", "steal", "tales");
+        assertThat(anagrams.anagrams("tinsel")).containsExactly("listen", "silent", "tinsel");
+        assertThat(anagrams.anagramClasses().count()).isEqualTo(1442L);
+        assertThat(largestClass).containsExactly("post", "pots", "spot", "stop", "tops");
+        assertThat(anagrams.wordsWithin("retains"))
+                .hasSize(129)
+                .isSorted()
+                .contains("stain", "train", "a");
+    }
+
     /**
      * Second, create a Function, that computes the number of blanks you need to
      * write a word. You can use the previous function and scrabbleENDistribution.
@@ -186,6 +281,28 @@ public class ShakespeareChallenge {
         assertThat(scoreWithBlank.apply("whizzing")).isEqualTo(23);
     }
 
+    /**
+     * The histograms, the number of blanks and the scores with blanks, precomputed for each word.
+     */
+    @Test
+    public void shakespeare07_wordScores() {
+
+        WordScoreTable table = WordScoreTable.of(List.of("whizzing", "hello", "buzzards"), scrabbleENScore, scrabbleENDistribution);
+
+        assertThat(table.word(0)).isEqualTo("buzzards");
+        assertThat(table.word(1)).isEqualTo("hello");
+        assertThat(table.count(1, 'l')).isEqualTo(2);
+        assertThat(table.count(1, 'z')).isEqualTo(0);
+        assertThat(table.count(2, 'z')).isEqualTo(2);
+        assertThat(table.histogram(2)[8]).isEqualTo((byte) 2);
+        assertThat(table.score(1)).isEqualTo(8);
+        assertThat(table.blanks(0)).isEqualTo(1);
+        assertThat(table.blanks(1)).isEqualTo(0);
+        assertThat(table.blanks(2)).isEqualTo(1);
+        assertThat(table.scoreWithBlanks(1)).isEqualTo(8);
+        assertThat(table.scoreWithBlanks(2)).isEqualTo(23);
+    }
+
     /**
      * You can now recompute the best word, taking into account the available letters
      * in the game and the new scoring function.
@@ -213,17 +330,51 @@ public class ShakespeareChallenge {
                                         scrabbleENScore[entry.getKey().charAt(0) - 'a'])
                         .sum();
 
-        Map.Entry<Integer, List<String>> bestWordsByScore =
+        List<String> bestWords =
                 shakespeareWords.stream()
                         .filter(scrabbleWords::contains)
                         .filter(word -> numberOfBlanks.apply(word) <= 2)
-                        .collect(Collectors.groupingBy(scoreWithBlank))
-                        .entrySet().stream()
-                        .max(Map.Entry.comparingByKey())
-                        .get();
+                        .collect(Extrema.maxAllByInt(scoreWithBlank::apply));
+
+        int bestScore = scoreWithBlank.apply(bestWords.get(0));
+
+        assertThat(bestScore).isEqualTo(26);
+        assertThat(bestWords).containsExactly("squeezes");
+    }
+
+    @Test
+    public void shakespeare08_wordScores() {
+
+        int bestScore =
+                playableWords.wordIds()
+                        .filter(word -> playableWords.blanks(word) <= 2)
+                        .map(playableWords::scoreWithBlanks)
+                        .max().getAsInt();
+        List<String> bestWords =
+                playableWords.wordIds()
+                        .filter(word -> playableWords.blanks(word) <= 2)
+                        .filter(word -> playableWords.scoreWithBlanks(word) == bestScore)
+                        .mapToObj(playableWords::word)
+                        .collect(Collectors.toList());
 
-        int bestScore = bestWordsByScore.getKey();
-        List<String> bestWords = bestWordsByScore.getValue();
+        assertThat(bestScore).isEqualTo(26);
+        assertThat(bestWords).containsExactly("squeezes");
+    }
+
+    @Test
+    public void shakespeare08_topScores() {
+
+        SortedMap<Integer, List<Integer>> bestWordsByScore =
+                playableWords.wordIds().parallel()
+                        .filter(word -> playableWords.blanks(word) <= 2)
+                        .boxed()
+                        .collect(TopScores.collector(playableWords::scoreWithBlanks, 1));
+
+        int bestScore = bestWordsByScore.firstKey();
+        List<String> bestWords =
+                bestWordsByScore.get(bestScore).stream()
+                        .map(playableWords::word)
+                        .collect(Collectors.toList());
 
         assertThat(bestScore).isEqualTo(26);
         assertThat(bestWords).containsExactly("squeezes");
@@ -269,6 +420,22 @@ public class ShakespeareChallenge {
         assertThat(wordsOfScore24).containsExactly("exequies", "joyfully", "quaffing", "wheezing", "zephyrs");
     }
 
+    /**
+     * The words of the table are sorted, so there is no need to sort them again.
+     */
+    @Test
+    public void shakespeare09_wordScores() {
+
+        List<String> wordsOfScore24 =
+                playableWords.wordIds()
+                        .filter(word -> playableWords.blanks(word) <= 2)
+                        .filter(word -> playableWords.scoreWithBlanks(word) == 24)
+                        .mapToObj(playableWords::word)
+                        .collect(Collectors.toList());
+
+        assertThat(wordsOfScore24).containsExactly("exequies", "joyfully", "quaffing", "wheezing", "zephyrs");
+    }
+
     /**
      * Now that we have the best words, we need to place them on the Scrabble board. The first move has to
      * touch the central square, and since the board is symmetrical, playing on a line is the same as playing
@@ -339,6 +506,184 @@ public class ShakespeareChallenge {
         assertThat(bestWordsByScore.get(120)).contains("jezebel", "quickly");
     }
 
+    /**
+     * The same query, with the intermediate functions memoized: numberOfLettersUsed is computed at most
+     * once per word, and running the query a second time reads the cache of totalScore. The memoizers
+     * can hold 64k words, well above the 14k words of the query, but a Memoizer evicts per segment,
+     * so the assertions only rely on the counts of calls, not on the absence of evictions.
+     */
+    @Test
+    public void shakespeare10_memoized() {
+
+        Memoizer<String, Map<String, Long>> numberOfLettersUsed =
+                Memoizer.of(word -> word.chars().mapToObj(Character::toString)
+                        .collect(Collectors.groupingBy(Function.identity(), Collectors.counting())), 1 << 16);
+
+        Function<String, Long> numberOfBlanks =
+                word ->
+                        numberOfLettersUsed.apply(word)
+                                .entrySet().stream()
+                                .mapToLong(entry ->
+                                        Long.max(0, entry.getValue() - scrabbleENDistribution[entry.getKey().charAt(0) - 'a']))
+                                .sum();
+
+        Function<String, Integer> scoreWithBlank =
+                word -> numberOfLettersUsed.apply(word)
+                        .entrySet().stream()
+                        .mapToInt(entry ->
+                                Integer.min(entry.getValue().intValue(), scrabbleENDistribution[entry.getKey().charAt(0) - 'a']) *
+                                        scrabbleENScore[entry.getKey().charAt(0) - 'a'])
+                        .sum();
+
+        Function<String, Stream<String>> letters =
+                word -> word.chars().mapToObj(Character::toString);
+
+        Function<String, Long> limit =
+                word -> Long.max((long) word.length() - 4L, 0L);
+
+        Function<String, Integer> bonusForDoubleLetter =
+                word -> Stream.concat(letters.apply(word).limit(limit.apply(word)), letters.apply(word).skip(7 - limit.apply(word)))
+                        .mapToInt(letter -> scrabbleENScore[letter.charAt(0) - 'a'])
+                        .max().orElse(0);
+
+        Memoizer<String, Integer> totalScore =
+                Memoizer.of(word -> (scoreWithBlank.apply(word) + bonusForDoubleLetter.apply(word)) * 2 + (word.length() == 7 ? 50 : 0), 1 << 16);
+
+        Function<Set<String>, Map<Integer, List<String>>> bestWordsByScore =
+                words -> words.parallelStream()
+                        .filter(scrabbleWords::contains)
+                        .filter(word -> numberOfBlanks.apply(word) <= 2)
+                        .collect(Collectors.groupingBy(totalScore))
+                        .entrySet().stream()
+                        .sorted(Map.Entry.<Integer, List<String>>comparingByKey().reversed())
+                        .limit(4)
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        Map<Integer, List<String>> firstRun = bestWordsByScore.apply(shakespeareWords);
+        Map<Integer, List<String>> secondRun = bestWordsByScore.apply(shakespeareWords);
+        long lettersUsedCalls = numberOfLettersUsed.hits() + numberOfLettersUsed.misses();
+        long lettersUsedMisses = numberOfLettersUsed.misses();
+        long totalScoreCalls = totalScore.hits() + totalScore.misses();
+        long totalScoreMisses = totalScore.misses();
+
+        // each run calls numberOfBlanks on the scrabble words, then totalScore on the ones that have
+        // at most 2 blanks, that only calls scoreWithBlank when it misses
+        long scrabbleWordCount = shakespeareWords.stream().filter(scrabbleWords::contains).count();
+        long playableWordCount = shakespeareWords.stream().filter(scrabbleWords::contains)
+                .filter(word -> numberOfBlanks.apply(word) <= 2).count();
+
+        assertThat(firstRun).containsKeys(114, 116, 118, 120);
+        assertThat(firstRun.get(120)).contains("jezebel", "quickly");
+        assertThat(secondRun).isEqualTo(firstRun);
+        assertThat(lettersUsedCalls).isEqualTo(2 * scrabbleWordCount + totalScoreMisses);
+        assertThat(lettersUsedMisses).isLessThanOrEqualTo(scrabbleWordCount);
+        assertThat(totalScoreCalls).isEqualTo(2 * playableWordCount);
+        assertThat(totalScoreMisses).isLessThanOrEqualTo(playableWordCount);
+    }
+
+    @Test
+    public void shakespeare10_wordScores() {
+
+        int[] bestScores =
+                playableWords.wordIds()
+                        .filter(word -> playableWords.blanks(word) <= 2)
+                        .map(playableWords::firstMoveScore)
+                        .distinct()
+                        .map(score -> -score).sorted().map(score -> -score)
+                        .limit(4)
+                        .toArray();
+
+        Map<Integer, List<String>> bestWordsByScore =
+                playableWords.wordIds()
+                        .filter(word -> playableWords.blanks(word) <= 2)
+                        .filter(word -> playableWords.firstMoveScore(word) >= bestScores[bestScores.length - 1])
+                        .boxed()
+                        .collect(Collectors.groupingBy(
+                                playableWords::firstMoveScore,
+                                Collectors.mapping(playableWords::word, Collectors.toList())));
+
+        assertThat(bestScores).containsExactly(120, 118, 116, 114);
+        assertThat(bestWordsByScore).hasSize(4);
+        assertThat(bestWordsByScore.get(114)).contains("qualify", "quicker", "quicken");
+        assertThat(bestWordsByScore.get(116)).contains("equinox");
+        assertThat(bestWordsByScore.get(118)).contains("zephyrs");
+        assertThat(bestWordsByScore.get(120)).contains("jezebel", "quickly");
+    }
+
+    @Test
+    public void shakespeare10_topScores() {
+
+        SortedMap<Integer, List<String>> bestWordsByScore =
+                playableWords.wordIds().parallel()
+                        .filter(word -> playableWords.blanks(word) <= 2)
+                        .boxed()
+                        .collect(TopScores.collector(playableWords::firstMoveScore, 4))
+                        .entrySet().stream()
+                        .collect(Collectors.toMap(
+                                Map.Entry::getKey,
+                                entry -> entry.getValue().stream().map(playableWords::word).collect(Collectors.toList()),
+                                (words1, words2) -> words1,
+                                TreeMap::new));
+
+        assertThat(bestWordsByScore.keySet()).containsExactly(114, 116, 118, 120);
+        assertThat(bestWordsByScore.get(114)).contains("qualify", "quicker", "quicken");
+        assertThat(bestWordsByScore.get(116)).contains("equinox");
+        assertThat(bestWordsByScore.get(118)).contains("zephyrs");
+        assertThat(bestWordsByScore.get(120)).containsExactly("jezebel", "quickly");
+    }
+
+    /**
+     * The scores, the distribution and the board can also be read from a file, for the english
+     * rules or for the rules of another language.
+     */
+    @Test
+    public void shakespeare10_scoringRules() throws IOException {
+
+        ScoringRules english = ScoringRules.load(Paths.get("files/scrabble/english.properties"));
+        ScoringRules french = ScoringRules.load(Paths.get("files/scrabble/french.properties"));
+        WordScoreTable englishScores = WordScoreTable.of(List.of("quickly", "whizzing", "zephyrs"), english);
+        WordScoreTable frenchScores = WordScoreTable.of(List.of("quickly", "whizzing", "zephyrs"), french);
+
+        int[] bestScores =
+                playableWords.wordIds()
+                        .filter(word -> playableWords.blanks(word) <= 2)
+                        .map(playableWords::firstMoveScore)
+                        .distinct()
+                        .map(score -> -score).sorted().map(score -> -score)
+                        .limit(4)
+                        .toArray();
+
+        assertThat(english.name()).isEqualTo("English");
+        assertThat(english.firstMoveScore("zephyrs", 24)).isEqualTo(118);
+        assertThat(englishScores.firstMoveScore(0)).isEqualTo(120);
+        assertThat(englishScores.firstMoveScore(1)).isEqualTo(-1);
+        assertThat(bestScores).containsExactly(120, 118, 116, 114);
+        assertThat(french.name()).isEqualTo("French");
+        assertThat(frenchScores.score(1)).isEqualTo(39);
+        assertThat(frenchScores.blanks(1)).isEqualTo(1);
+        assertThat(frenchScores.scoreWithBlanks(1)).isEqualTo(29);
+    }
+
+    /**
+     * Given a rack of 7 tiles, a blank being written '?', what are the best words Shakespeare could play?
+     */
+    @Test
+    public void shakespeare10_rackSolver() {
+
+        RackSolver solver = RackSolver.of(playableWords);
+
+        List<WordScore> bestWords = solver.bestWords("zephyrs", 3);
+        List<WordScore> bestWordsWithBlank = solver.bestWords("quick?y", 3);
+
+        assertThat(bestWords).extracting(WordScore::word).startsWith("zephyrs");
+        assertThat(bestWords.get(0).score()).isEqualTo(24 + 50);
+        assertThat(bestWordsWithBlank).extracting(WordScore::word).startsWith("quickly");
+        assertThat(bestWordsWithBlank.get(0).score()).isEqualTo(25 - 1 + 50);
+        assertThat(solver.bestWords("", 3)).isEmpty();
+        assertThat(solver.bestWords("quick?y", 0)).isEmpty();
+        assertThat(solver.bestWords("xxxxxxx", 3)).isEmpty();
+    }
+
 
 // ========================================================
 // END OF EXERCISES
@@ -366,5 +711,13 @@ public class ShakespeareChallenge {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        try {
+            scrabbleLexicon = Lexicon.load(Paths.get("files/shakespeare/words.shakespeare.txt.gz"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        playableWords = WordScoreTable.of(
+                shakespeareWords.stream().filter(scrabbleLexicon::contains).collect(Collectors.toList()),
+                scrabbleENScore, scrabbleENDistribution);
     }
 }
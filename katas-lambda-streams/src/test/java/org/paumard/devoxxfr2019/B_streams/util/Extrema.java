@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * Collectors of the elements of a stream that have the greatest or the smallest keys, that only keep
+ * the current extrema while they accumulate, instead of grouping all the elements by key to select
+ * the greatest group.
+ * <p/>
+ * maxAllBy() and minAllBy() collect all the elements that tie for the greatest or the smallest key,
+ * in the encounter order, as P_Challenges.Longest does for the length of strings. topKBy() and bottomKBy()
+ * collect the k best elements, sorted best first, with a bounded heap of k elements. The elements
+ * that tie are ordered by their index in the encounter order, the indexes of a split being shifted
+ * by the number of elements of the splits before it, so the first ones are kept, on a sequential
+ * or a parallel stream.
+ * <p/>
+ * The key extractors can return ints or longs: these keys are compared and stored as longs, and are
+ * never boxed.
+ */
+public class Extrema {
+
+    private Extrema() {
+    }
+
+    public static <T> Collector<T, ?, List<T>> maxAllBy(Comparator<? super T> comparator) {
+        return Collector.of(
+                () -> new AllBy<T>(comparator),
+                AllBy::accept,
+                AllBy::combine,
+                AllBy::elements);
+    }
+
+    public static <T> Collector<T, ?, List<T>> minAllBy(Comparator<? super T> comparator) {
+        return maxAllBy(comparator.reversed());
+    }
+
+    public static <T> Collector<T, ?, List<T>> maxAllByInt(ToIntFunction<? super T> key) {
+        return maxAllByLong(element -> key.applyAsInt(element));
+    }
+
+    public static <T> Collector<T, ?, List<T>> minAllByInt(ToIntFunction<? super T> key) {
+        return minAllByLong(element -> key.applyAsInt(element));
+    }
+
+    public static <T> Collector<T, ?, List<T>> maxAllByLong(ToLongFunction<? super T> key) {
+        return allByLong(key, true);
+    }
+
+    public static <T> Collector<T, ?, List<T>> minAllByLong(ToLongFunction<? super T> key) {
+        return allByLong(key, false);
+    }
+
+    private static <T> Collector<T, ?, List<T>> allByLong(ToLongFunction<? super T> key, boolean max) {
+        return Collector.of(
+                () -> new AllByLong<T>(key, max),
+                AllByLong::accept,
+                AllByLong::combine,
+                AllByLong::elements);
+    }
+
+    /**
+     * Returns a collector of the k greatest elements for this comparator, the greatest first.
+     */
+    public static <T> Collector<T, ?, List<T>> topKBy(Comparator<? super T> comparator, int k) {
+        return kBy(null, comparator, k, true);
+    }
+
+    /**
+     * Returns a collector of the k smallest elements for this comparator, the smallest first.
+     */
+    public static <T> Collector<T, ?, List<T>> bottomKBy(Comparator<? super T> comparator, int k) {
+        return kBy(null, comparator, k, false);
+    }
+
+    public static <T> Collector<T, ?, List<T>> topKByInt(ToIntFunction<? super T> key, int k) {
+        return topKByLong(element -> key.applyAsInt(element), k);
+    }
+
+    public static <T> Collector<T, ?, List<T>> bottomKByInt(ToIntFunction<? super T> key, int k) {
+        return bottomKByLong(element -> key.applyAsInt(element), k);
+    }
+
+    public static <T> Collector<T, ?, List<T>> topKByLong(ToLongFunction<? super T> key, int k) {
+        return kBy(key, null, k, true);
+    }
+
+    public static <T> Collector<T, ?, List<T>> bottomKByLong(ToLongFunction<? super T> key, int k) {
+        return kBy(key, null, k, false);
+    }
+
+    private static <T> Collector<T, ?, List<T>> kBy(ToLongFunction<? super T> key, Comparator<? super T> comparator,
+                                                    int k, boolean top) {
+        if (k < 1) {
+            throw new IllegalArgumentException("The number of elements should be positive: " + k);
+        }
+        return Collector.of(
+                () -> new KBy<T>(key, comparator, k, top),
+                KBy::accept,
+                KBy::combine,
+                KBy::elements);
+    }
+
+    private static final class AllBy<T> {
+
+        private final Comparator<? super T> comparator;
+        private final List<T> elements = new ArrayList<>();
+
+        private AllBy(Comparator<? super T> comparator) {
+            this.comparator = comparator;
+        }
+
+        private void accept(T element) {
+            int comparison = elements.isEmpty() ? 1 : comparator.compare(element, elements.get(0));
+            if (comparison > 0) {
+                elements.clear();
+                elements.add(element);
+            } else if (comparison == 0) {
+                elements.add(element);
+            }
+        }
+
+        private AllBy<T> combine(AllBy<T> other) {
+            if (other.elements.isEmpty()) {
+                return this;
+            }
+            int comparison = elements.isEmpty() ? -1 : comparator.compare(elements.get(0), other.elements.get(0));
+            if (comparison < 0) {
+                return other;
+            } else if (comparison == 0) {
+                elements.addAll(other.elements);
+            }
+            return this;
+        }
+
+        private List<T> elements() {
+            return elements;
+        }
+    }
+
+    private static final class AllByLong<T> {
+
+        private final ToLongFunction<? super T> key;
+        private final boolean max;
+        private final List<T> elements = new ArrayList<>();
+        private long bestKey;
+
+        private AllByLong(ToLongFunction<? super T> key, boolean max) {
+            this.key = key;
+            this.max = max;
+        }
+
+        private boolean isBetter(long key1, long key2) {
+            return max ? key1 > key2 : key1 < key2;
+        }
+
+        private void accept(T element) {
+            long elementKey = key.applyAsLong(element);
+            if (elements.isEmpty() || isBetter(elementKey, bestKey)) {
+                bestKey = elementKey;
+                elements.clear();
+                elements.add(element);
+            } else if (elementKey == bestKey) {
+                elements.add(element);
+            }
+        }
+
+        private AllByLong<T> combine(AllByLong<T> other) {
+            if (other.elements.isEmpty()) {
+                return this;
+            }
+            if (elements.isEmpty() || isBetter(other.bestKey, bestKey)) {
+                return other;
+            }
+            if (other.bestKey == bestKey) {
+                elements.addAll(other.elements);
+            }
+            return this;
+        }
+
+        private List<T> elements() {
+            return elements;
+        }
+    }
+
+    /**
+     * The k best elements, with their keys and their indexes in the encounter order, in a binary heap
+     * held in arrays, whose root is the worst of them. The elements are compared by their long keys,
+     * or by the comparator when there are no keys, then by their indexes, the first one being the best.
+     */
+    private static final class KBy<T> {
+
+        private final ToLongFunction<? super T> key;
+        private final Comparator<? super T> comparator;
+        private final int k;
+        private final boolean top;
+        private long[] keys;
+        private long[] indexes;
+        private Object[] elements;
+        private int size;
+        private long count;
+
+        private KBy(ToLongFunction<? super T> key, Comparator<? super T> comparator, int k, boolean top) {
+            this.key = key;
+            this.comparator = comparator;
+            this.k = k;
+            this.top = top;
+            int capacity = Math.min(k, 16);
+            this.keys = new long[capacity];
+            this.indexes = new long[capacity];
+            this.elements = new Object[capacity];
+        }
+
+        private void accept(T element) {
+            add(key == null ? 0L : key.applyAsLong(element), count++, element);
+        }
+
+        /**
+         * The elements of the other heap follow the ones of this heap in the encounter order,
+         * so their indexes are shifted by the number of elements this heap has seen.
+         */
+        private KBy<T> combine(KBy<T> other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.keys[i], count + other.indexes[i], other.elements[i]);
+            }
+            count += other.count;
+            return this;
+        }
+
+        private void add(long elementKey, long index, Object element) {
+            if (size < k) {
+                if (size == keys.length) {
+                    int capacity = (int) Math.min(k, 2L * size);
+                    keys = Arrays.copyOf(keys, capacity);
+                    indexes = Arrays.copyOf(indexes, capacity);
+                    elements = Arrays.copyOf(elements, capacity);
+                }
+                keys[size] = elementKey;
+                indexes[size] = index;
+                elements[size] = element;
+                siftUp(size++);
+            } else if (compare(elementKey, index, element, 0) > 0) {
+                keys[0] = elementKey;
+                indexes[0] = index;
+                elements[0] = element;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Positive if the element is better than the one at position i of the heap.
+         */
+        @SuppressWarnings("unchecked")
+        private int compare(long elementKey, long index, Object element, int i) {
+            int comparison = key == null ?
+                    comparator.compare((T) element, (T) elements[i]) :
+                    Long.compare(elementKey, keys[i]);
+            if (comparison == 0) {
+                return Long.compare(indexes[i], index);
+            }
+            return top ? comparison : -comparison;
+        }
+
+        private boolean isBetter(int i, int j) {
+            return compare(keys[i], indexes[i], elements[i], j) > 0;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!isBetter(parent, index)) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (2 * index + 1 < size) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && isBetter(child, child + 1)) {
+                    child++;
+                }
+                if (!isBetter(index, child)) {
+                    return;
+                }
+                swap(index, child);
+                index = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            long swappedKey = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swappedKey;
+            long swappedIndex = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = swappedIndex;
+            Object swappedElement = elements[i];
+            elements[i] = elements[j];
+            elements[j] = swappedElement;
+        }
+
+        /**
+         * Empties a copy of the heap, the worst element first, so that the list is filled from its end.
+         * This heap is left untouched.
+         */
+        @SuppressWarnings("unchecked")
+        private List<T> elements() {
+            KBy<T> copy = new KBy<>(key, comparator, k, top);
+            copy.keys = Arrays.copyOf(keys, size);
+            copy.indexes = Arrays.copyOf(indexes, size);
+            copy.elements = Arrays.copyOf(elements, size);
+            copy.size = size;
+            Object[] sorted = new Object[size];
+            while (copy.size > 0) {
+                sorted[copy.size - 1] = copy.elements[0];
+                copy.size--;
+                copy.keys[0] = copy.keys[copy.size];
+                copy.indexes[0] = copy.indexes[copy.size];
+                copy.elements[0] = copy.elements[copy.size];
+                copy.siftDown(0);
+            }
+            return new ArrayList<>((List<T>) Arrays.asList(sorted));
+        }
+    }
+}
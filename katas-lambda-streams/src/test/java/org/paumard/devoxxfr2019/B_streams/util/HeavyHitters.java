@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The Misra-Gries summary of a stream of ints or longs, that finds its heavy hitters with k counters.
+ * <p/>
+ * A value that has a counter increments it, a new value takes a free counter, and when the k counters
+ * are taken, all of them are decremented, and the ones that reach 0 are freed. A value that appears
+ * more than n / (k + 1) times in a stream of n values is always in the summary, and its counter
+ * underestimates its number of occurrences by at most n / (k + 1). The values of the summary are only
+ * candidates, that can be checked by a second pass, as frequentValues() does. With k = 1 the summary
+ * is the majority vote of MajorityVote.
+ * <p/>
+ * The values and the counters are held in two arrays of k longs, scanned when a value is added, so
+ * the summary does not allocate anything but is meant for small values of k. Two summaries are combined
+ * by adding their counters, and subtracting the (k + 1)-th greatest counter from all of them: the
+ * combined summary keeps the same guarantees, so it can be used on parallel streams:
+ * <pre>
+ *     HeavyHitters heavyHitters = IntStream.of(values).parallel()
+ *             .collect(() -> HeavyHitters.of(k), HeavyHitters::accept, HeavyHitters::combine);
+ * </pre>
+ */
+public class HeavyHitters implements IntConsumer, LongConsumer {
+
+    private final long[] values;
+    private final long[] counters;
+    private int size;
+    private long count;
+
+    private HeavyHitters(int k) {
+        this.values = new long[k];
+        this.counters = new long[k];
+    }
+
+    public static HeavyHitters of(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("The number of counters should be positive: " + k);
+        }
+        return new HeavyHitters(k);
+    }
+
+    @Override
+    public void accept(int value) {
+        accept((long) value);
+    }
+
+    @Override
+    public void accept(long value) {
+        count++;
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                counters[i]++;
+                return;
+            }
+        }
+        if (size < values.length) {
+            values[size] = value;
+            counters[size] = 1L;
+            size++;
+        } else {
+            subtract(1L);
+        }
+    }
+
+    /**
+     * Subtracts delta from all the counters, and removes the ones that are not positive anymore.
+     */
+    private void subtract(long delta) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (counters[i] > delta) {
+                values[kept] = values[i];
+                counters[kept] = counters[i] - delta;
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    public HeavyHitters combine(HeavyHitters other) {
+        if (other.values.length != values.length) {
+            throw new IllegalArgumentException(
+                    "Cannot combine a summary of " + other.values.length + " counters with a summary of " + values.length);
+        }
+        long[] mergedValues = Arrays.copyOf(values, size + other.size);
+        long[] mergedCounters = Arrays.copyOf(counters, size + other.size);
+        int mergedSize = size;
+        for (int j = 0; j < other.size; j++) {
+            int i = 0;
+            while (i < size && values[i] != other.values[j]) {
+                i++;
+            }
+            if (i < size) {
+                mergedCounters[i] += other.counters[j];
+            } else {
+                mergedValues[mergedSize] = other.values[j];
+                mergedCounters[mergedSize] = other.counters[j];
+                mergedSize++;
+            }
+        }
+        long delta = 0L;
+        if (mergedSize > values.length) {
+            long[] sortedCounters = Arrays.copyOf(mergedCounters, mergedSize);
+            Arrays.sort(sortedCounters);
+            delta = sortedCounters[mergedSize - values.length - 1];
+        }
+        size = 0;
+        for (int i = 0; i < mergedSize; i++) {
+            if (mergedCounters[i] > delta) {
+                values[size] = mergedValues[i];
+                counters[size] = mergedCounters[i] - delta;
+                size++;
+            }
+        }
+        count += other.count;
+        return this;
+    }
+
+    /**
+     * The candidate values, sorted by decreasing counter, then by increasing value.
+     */
+    public long[] candidates() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> counters[i] != counters[j] ?
+                Long.compare(counters[j], counters[i]) : Long.compare(values[i], values[j]));
+        long[] candidates = new long[size];
+        for (int i = 0; i < size; i++) {
+            candidates[i] = values[order[i]];
+        }
+        return candidates;
+    }
+
+    /**
+     * A lower bound of the number of occurrences of this value, that is at most maxError() below it,
+     * 0 if this value is not a candidate.
+     */
+    public long lowerBound(long value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return counters[i];
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * The greatest difference between the number of occurrences of a value and its lower bound,
+     * that is n / (k + 1). A value that occurs more than that is a candidate.
+     */
+    public long maxError() {
+        return count / (values.length + 1);
+    }
+
+    /**
+     * The number of values of the summary.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * The values that occur more than array.length / (k + 1) times in this array, by decreasing number
+     * of occurrences, then by increasing value. The candidates are computed with a parallel summary of
+     * k counters, then checked by a second pass that counts their occurrences.
+     */
+    public static int[] frequentValues(int[] array, int k) {
+        HeavyHitters heavyHitters = Arrays.stream(array).parallel()
+                .collect(() -> of(k), HeavyHitters::accept, HeavyHitters::combine);
+        long[] candidates = heavyHitters.candidates();
+        long[] occurrences = new long[candidates.length];
+        for (int value : array) {
+            for (int i = 0; i < candidates.length; i++) {
+                if (candidates[i] == value) {
+                    occurrences[i]++;
+                    break;
+                }
+            }
+        }
+        return IntStream.range(0, candidates.length)
+                .filter(i -> occurrences[i] * (k + 1) > array.length)
+                .boxed()
+                .sorted((i, j) -> occurrences[i] != occurrences[j] ?
+                        Long.compare(occurrences[j], occurrences[i]) : Long.compare(candidates[i], candidates[j]))
+                .mapToInt(i -> (int) candidates[i])
+                .toArray();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.util.stream.Collector;
+
+/**
+ * A HyperLogLog sketch, that estimates the number of distinct words of a stream in a fixed
+ * amount of memory, and counts the total number of words exactly.
+ * <p/>
+ * Each word is hashed on 64 bits. The first precision bits of the hash select one of the
+ * 2^precision registers, that keeps the greatest rank of the first 1 bit among the remaining
+ * bits of the hashes it has seen. The estimate is the normalized harmonic mean of 2^rank over
+ * the registers, corrected by linear counting on the empty registers for the small cardinalities.
+ * <p/>
+ * A sketch holds one byte per register: 16 KB for the default precision of 14. Its relative standard
+ * error is 1.04 / sqrt(2^precision), that is 0.81% for a precision of 14, 1.6% for 12 and 0.41%
+ * for 16; about 99.7% of the estimates are within three standard errors of the exact count.
+ * Two sketches of the same precision are merged by keeping the greatest value of each register,
+ * so the merged sketch is the one of the concatenation of both streams.
+ * This class is not thread safe.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 14;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+    private long totalCount;
+
+    private HyperLogLog(int precision) {
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public static HyperLogLog of() {
+        return of(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates an empty sketch of 2^precision registers, precision being between 4 and 18.
+     */
+    public static HyperLogLog of(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "Precision should be between " + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+        }
+        return new HyperLogLog(precision);
+    }
+
+    /**
+     * Returns a collector that adds the words it collects to a sketch of this precision.
+     * Each thread of a parallel stream fills its own sketch, and the combiner merges them in O(2^precision).
+     */
+    public static Collector<CharSequence, ?, HyperLogLog> collector(int precision) {
+        return Collector.of(
+                () -> of(precision),
+                HyperLogLog::add,
+                HyperLogLog::merge,
+                Collector.Characteristics.UNORDERED,
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /**
+     * A 64 bits hash of the chars of this word: FNV-1a, followed by the finalization step of
+     * MurmurHash3, so that all the bits of the hash depend on all the chars.
+     */
+    public static long hash(CharSequence word) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash = (hash ^ word.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public void add(CharSequence word) {
+        addHash(hash(word));
+    }
+
+    /**
+     * Adds an element given by its 64 bits hash, that should be evenly distributed.
+     */
+    public void addHash(long hash) {
+        totalCount++;
+        int register = (int) (hash >>> (64 - precision));
+        // the marker bit bounds the rank to 64 - precision + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /**
+     * Merges the other sketch, of the same precision, in this one, and returns this one.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(
+                    "Cannot merge a sketch of precision " + other.precision + " in a sketch of precision " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        totalCount += other.totalCount;
+        return this;
+    }
+
+    /**
+     * The estimate of the number of distinct elements added to this sketch.
+     */
+    public long distinctCount() {
+        int m = registers.length;
+        double sum = 0d;
+        int emptyRegisters = 0;
+        for (byte rank : registers) {
+            sum += 1d / (1L << rank);
+            if (rank == 0) {
+                emptyRegisters++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5d * m && emptyRegisters > 0) {
+            estimate = m * Math.log((double) m / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673d;
+            case 32:
+                return 0.697d;
+            case 64:
+                return 0.709d;
+            default:
+                return 0.7213d / (1d + 1.079d / m);
+        }
+    }
+
+    /**
+     * The exact number of elements added to this sketch, duplicates included.
+     */
+    public long totalCount() {
+        return totalCount;
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * The relative standard error of distinctCount(), 1.04 / sqrt(2^precision).
+     */
+    public double standardError() {
+        return 1.04d / Math.sqrt(registers.length);
+    }
+}
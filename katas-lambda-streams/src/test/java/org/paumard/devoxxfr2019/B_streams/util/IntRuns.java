@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The run-length encoding of a stream of ints, for instance the chars of a String: the runs of
+ * consecutive equal values are stored as their value and their length, in two growing arrays,
+ * so the memory used is proportional to the number of runs, and the stream does not need to be
+ * held in memory.
+ * <p/>
+ * Two encodings are combined by appending the runs of the second one to the first one, the last
+ * run of the first one and the first run of the second one being stitched together when they have
+ * the same value. Parallel streams combine their splits in the encounter order, so the encoding of
+ * a parallel stream is the one of the sequential stream:
+ * <pre>
+ *     IntRuns runs = input.chars().parallel()
+ *             .collect(IntRuns::new, IntRuns::accept, IntRuns::combine);
+ * </pre>
+ */
+public class IntRuns implements IntConsumer {
+
+    private int[] values = new int[16];
+    private long[] lengths = new long[16];
+    private int size;
+
+    @Override
+    public void accept(int value) {
+        if (size > 0 && values[size - 1] == value) {
+            lengths[size - 1]++;
+        } else {
+            add(value, 1L);
+        }
+    }
+
+    private void add(int value, long length) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * size);
+            lengths = Arrays.copyOf(lengths, 2 * size);
+        }
+        values[size] = value;
+        lengths[size] = length;
+        size++;
+    }
+
+    /**
+     * Appends the runs of the other encoding, that follow the ones of this encoding in the stream,
+     * and returns this encoding.
+     */
+    public IntRuns combine(IntRuns other) {
+        int first = 0;
+        if (size > 0 && other.size > 0 && values[size - 1] == other.values[0]) {
+            lengths[size - 1] += other.lengths[0];
+            first = 1;
+        }
+        for (int run = first; run < other.size; run++) {
+            add(other.values[run], other.lengths[run]);
+        }
+        return this;
+    }
+
+    public int numberOfRuns() {
+        return size;
+    }
+
+    public int value(int run) {
+        checkRun(run);
+        return values[run];
+    }
+
+    public long length(int run) {
+        checkRun(run);
+        return lengths[run];
+    }
+
+    private void checkRun(int run) {
+        if (run < 0 || run >= size) {
+            throw new IndexOutOfBoundsException("Run " + run + " for " + size + " runs");
+        }
+    }
+
+    /**
+     * The runs of chars as Strings, for an encoding of the chars of a String.
+     */
+    public String[] toStrings() {
+        String[] strings = new String[size];
+        for (int run = 0; run < size; run++) {
+            char[] chars = new char[Math.toIntExact(lengths[run])];
+            Arrays.fill(chars, (char) values[run]);
+            strings[run] = new String(chars);
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.util.Arrays;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * The Boyer-Moore majority vote over a stream of ints or longs, in O(1) memory.
+ * <p/>
+ * The vote keeps a candidate and a counter: a value equal to the candidate increments the counter,
+ * another value decrements it, and replaces the candidate when the counter is 0. If a value appears
+ * in strictly more than half of the stream, it is the final candidate, but the candidate of a stream
+ * without a majority is arbitrary, so it has to be checked by a second pass, as majority() does.
+ * <p/>
+ * Two votes are combined by letting their candidates cancel each other: the candidate with the
+ * greatest counter is kept, with the difference of the counters. The majority of the concatenation
+ * of two streams is the majority of one of them, so it survives the combination, and the vote can
+ * be used on parallel streams:
+ * <pre>
+ *     MajorityVote vote = IntStream.of(values).parallel()
+ *             .collect(MajorityVote::new, MajorityVote::accept, MajorityVote::combine);
+ * </pre>
+ */
+public class MajorityVote implements IntConsumer, LongConsumer {
+
+    private long candidate;
+    private long counter;
+    private long count;
+
+    @Override
+    public void accept(int value) {
+        accept((long) value);
+    }
+
+    @Override
+    public void accept(long value) {
+        count++;
+        if (counter == 0L) {
+            candidate = value;
+            counter = 1L;
+        } else if (value == candidate) {
+            counter++;
+        } else {
+            counter--;
+        }
+    }
+
+    public MajorityVote combine(MajorityVote other) {
+        if (counter == 0L || candidate == other.candidate) {
+            candidate = other.candidate;
+            counter += other.counter;
+        } else if (other.counter > counter) {
+            candidate = other.candidate;
+            counter = other.counter - counter;
+        } else {
+            counter -= other.counter;
+        }
+        count += other.count;
+        return this;
+    }
+
+    /**
+     * The only value that can be a majority, empty if no value can be. It still has to be checked.
+     */
+    public OptionalLong candidate() {
+        return counter == 0L ? OptionalLong.empty() : OptionalLong.of(candidate);
+    }
+
+    /**
+     * The number of values of the vote.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * The value that occurs in strictly more than half of this array, computed with a parallel vote,
+     * then checked by counting the occurrences of the candidate.
+     */
+    public static OptionalInt majority(int[] array) {
+        MajorityVote vote = Arrays.stream(array).parallel()
+                .collect(MajorityVote::new, MajorityVote::accept, MajorityVote::combine);
+        if (vote.counter == 0L) {
+            return OptionalInt.empty();
+        }
+        int candidate = (int) vote.candidate;
+        long occurrences = Arrays.stream(array).parallel().filter(value -> value == candidate).count();
+        return occurrences > array.length / 2 ? OptionalInt.of(candidate) : OptionalInt.empty();
+    }
+
+    public static OptionalLong majority(long[] array) {
+        MajorityVote vote = Arrays.stream(array).parallel()
+                .collect(MajorityVote::new, MajorityVote::accept, MajorityVote::combine);
+        if (vote.counter == 0L) {
+            return OptionalLong.empty();
+        }
+        long candidate = vote.candidate;
+        long occurrences = Arrays.stream(array).parallel().filter(value -> value == candidate).count();
+        return occurrences > array.length / 2 ? OptionalLong.of(candidate) : OptionalLong.empty();
+    }
+}
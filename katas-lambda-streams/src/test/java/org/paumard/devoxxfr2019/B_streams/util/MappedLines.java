@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The lines of a text file, as a stream that splits well in parallel: the file is memory mapped,
+ * and its spliterator is a range of bytes. trySplit() cuts this range in the middle, then moves
+ * the cut after the next line terminator, so that each half holds whole lines. A line is only decoded from
+ * UTF-8 to a String when the stream consumes it, in the thread that processes its range.
+ * <p/>
+ * The lines are the ones of BufferedReader.lines(): they are ended by '\n', '\r' or "\r\n", and
+ * the last line may have no line terminator. Unlike BufferedReader, malformed UTF-8 sequences are
+ * replaced by U+FFFD instead of throwing an exception.
+ * <p/>
+ * A MappedByteBuffer is indexed by an int, so the file is mapped in regions of 1GB, and a line may
+ * straddle two regions. tryAdvance() looks for the end of the line in the current region, then copies
+ * the line in one bulk get, or in one bulk get per region it spans.
+ */
+public class MappedLines {
+
+    private static final int REGION_BITS = 30;
+    private static final long REGION_SIZE = 1L << REGION_BITS;
+    private static final long REGION_MASK = REGION_SIZE - 1;
+
+    static final long MIN_SPLIT_SIZE = 1 << 14;
+
+    private MappedLines() {
+    }
+
+    /**
+     * Maps this file and returns its lines, decoded from UTF-8.
+     */
+    public static Stream<String> lines(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) >>> REGION_BITS)];
+            for (int region = 0; region < regions.length; region++) {
+                long position = region * REGION_SIZE;
+                regions[region] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION_SIZE, size - position));
+            }
+            return StreamSupport.stream(new LineSpliterator(regions, 0L, size, MIN_SPLIT_SIZE), false);
+        }
+    }
+
+    static class LineSpliterator implements Spliterator<String> {
+
+        private final MappedByteBuffer[] regions;
+        private final long minSplitSize;
+        private long from;
+        private final long to;
+        private byte[] line = new byte[256];
+        private ByteBuffer buffer;
+        private int bufferRegion = -1;
+
+        LineSpliterator(MappedByteBuffer[] regions, long from, long to, long minSplitSize) {
+            this.regions = regions;
+            this.from = from;
+            this.to = to;
+            this.minSplitSize = minSplitSize;
+        }
+
+        private byte byteAt(long position) {
+            return regions[(int) (position >>> REGION_BITS)].get((int) (position & REGION_MASK));
+        }
+
+        /**
+         * The region of this position, duplicated so that its position can be moved by this spliterator only.
+         */
+        private ByteBuffer region(long position) {
+            int region = (int) (position >>> REGION_BITS);
+            if (region != bufferRegion) {
+                buffer = regions[region].duplicate();
+                bufferRegion = region;
+            }
+            return buffer;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            if (from >= to) {
+                return false;
+            }
+            int length = 0;
+            long position = from;
+            byte b = 0;
+            while (position < to) {
+                ByteBuffer region = region(position);
+                int start = (int) (position & REGION_MASK);
+                int end = (int) Math.min(region.limit(), start + (to - position));
+                int index = start;
+                while (index < end && (b = region.get(index)) != '\n' && b != '\r') {
+                    index++;
+                }
+                length = append(region, start, index, length);
+                position += index - start;
+                if (index < end) {
+                    break;
+                }
+            }
+            if (position < to) {
+                position++;
+                if (b == '\r' && position < to && byteAt(position) == '\n') {
+                    position++;
+                }
+            }
+            from = position;
+            action.accept(new String(line, 0, length, StandardCharsets.UTF_8));
+            return true;
+        }
+
+        private int append(ByteBuffer region, int start, int end, int length) {
+            int count = end - start;
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(2 * line.length, length + count));
+            }
+            region.position(start);
+            region.get(line, length, count);
+            return length + count;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            if (to - from < minSplitSize) {
+                return null;
+            }
+            long cut = from + (to - from) / 2;
+            byte b = 0;
+            while (cut < to && (b = byteAt(cut)) != '\n' && b != '\r') {
+                cut++;
+            }
+            cut++;
+            if (b == '\r' && cut < to && byteAt(cut) == '\n') {
+                cut++;
+            }
+            if (cut >= to) {
+                return null;
+            }
+            LineSpliterator prefix = new LineSpliterator(regions, from, cut, minSplitSize);
+            from = cut;
+            return prefix;
+        }
+
+        /**
+         * The number of bytes left, an upper bound of the number of lines left.
+         */
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
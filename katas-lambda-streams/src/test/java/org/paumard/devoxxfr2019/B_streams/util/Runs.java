@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collector;
+
+/**
+ * Collectors that group the consecutive equal elements of a stream, as Python's itertools.groupby
+ * does, and unlike Collectors.groupingBy(), that groups all the equal elements together.
+ * <p/>
+ * A run is encoded as its first element and its length, as IntRuns does for ints, so the elements
+ * of the stream are not held in memory: the memory used is proportional to the number of runs.
+ * <p/>
+ * These collectors are not UNORDERED: a parallel stream combines the runs of its splits in the
+ * encounter order, and the combiner stitches the last run of the left split with the first run
+ * of the right split when their elements are equal.
+ */
+public class Runs {
+
+    private Runs() {
+    }
+
+    /**
+     * A run of consecutive elements equal to its value.
+     */
+    public static class Run<T> {
+
+        private final T value;
+        private long length;
+
+        private Run(T value, long length) {
+            this.value = value;
+            this.length = length;
+        }
+
+        /**
+         * The first element of this run.
+         */
+        public T value() {
+            return value;
+        }
+
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return value + " x " + length;
+        }
+    }
+
+    /**
+     * Returns a collector of the runs of consecutive elements equal in the sense of Objects.equals().
+     */
+    public static <T> Collector<T, ?, List<Run<T>>> grouping() {
+        return Collector.of(
+                ArrayList::new,
+                Runs::accumulate,
+                Runs::combine);
+    }
+
+    private static <T> void accumulate(List<Run<T>> runs, T element) {
+        if (!runs.isEmpty()) {
+            Run<T> lastRun = runs.get(runs.size() - 1);
+            if (Objects.equals(lastRun.value, element)) {
+                lastRun.length++;
+                return;
+            }
+        }
+        runs.add(new Run<>(element, 1L));
+    }
+
+    private static <T> List<Run<T>> combine(List<Run<T>> runs1, List<Run<T>> runs2) {
+        if (runs1.isEmpty()) {
+            return runs2;
+        }
+        if (!runs2.isEmpty()) {
+            Run<T> lastRun = runs1.get(runs1.size() - 1);
+            Run<T> firstRun = runs2.get(0);
+            if (Objects.equals(lastRun.value, firstRun.value)) {
+                lastRun.length += firstRun.length;
+                runs1.addAll(runs2.subList(1, runs2.size()));
+            } else {
+                runs1.addAll(runs2);
+            }
+        }
+        return runs1;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collector;
+
+/**
+ * A set of words that can be filled by several threads, and that counts the words added to it,
+ * duplicates included.
+ * <p/>
+ * The words are spread over a fixed number of stripes by the high bits of their mixed hash code.
+ * Each stripe is an open addressing table of the words and their hash codes, resolved by linear
+ * probing on the low bits, that doubles its capacity when it is 3/4 full, and is guarded by its
+ * own lock. Threads that add words to different stripes do not wait for each other, and the total
+ * count is a LongAdder.
+ * <p/>
+ * Its collector is CONCURRENT and UNORDERED, so a parallel stream fills a single set, instead of
+ * one HashSet per task merged with addAll() when the tasks are joined.
+ */
+public class StripedWordSet {
+
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final LongAdder totalCount = new LongAdder();
+
+    private StripedWordSet(int numberOfStripes) {
+        this.stripes = new Stripe[numberOfStripes];
+        for (int i = 0; i < numberOfStripes; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(numberOfStripes);
+    }
+
+    /**
+     * Creates a set with 4 stripes per available processor, rounded up to a power of 2.
+     */
+    public static StripedWordSet of() {
+        return of(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public static StripedWordSet of(int numberOfStripes) {
+        if (numberOfStripes < 1 || numberOfStripes > 1 << 16) {
+            throw new IllegalArgumentException("Number of stripes should be between 1 and 65536: " + numberOfStripes);
+        }
+        return new StripedWordSet(Integer.highestOneBit(2 * numberOfStripes - 1));
+    }
+
+    /**
+     * Returns a concurrent collector, that adds the words it collects to a single StripedWordSet.
+     */
+    public static Collector<String, ?, StripedWordSet> collector() {
+        return Collector.of(
+                StripedWordSet::of,
+                StripedWordSet::add,
+                StripedWordSet::merge,
+                Collector.Characteristics.CONCURRENT,
+                Collector.Characteristics.UNORDERED,
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    private static int hash(String word) {
+        int hash = word.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Adds this word, and returns true if it was not in this set.
+     */
+    public boolean add(String word) {
+        totalCount.increment();
+        int hash = hash(word);
+        Stripe stripe = stripes[stripeShift == 32 ? 0 : hash >>> stripeShift];
+        synchronized (stripe) {
+            return stripe.add(word, hash);
+        }
+    }
+
+    public boolean contains(String word) {
+        int hash = hash(word);
+        Stripe stripe = stripes[stripeShift == 32 ? 0 : hash >>> stripeShift];
+        synchronized (stripe) {
+            return stripe.contains(word, hash);
+        }
+    }
+
+    /**
+     * Adds the words of the other set to this one, and returns this one.
+     */
+    public StripedWordSet merge(StripedWordSet other) {
+        for (Stripe otherStripe : other.stripes) {
+            String[] words;
+            int[] hashes;
+            synchronized (otherStripe) {
+                words = otherStripe.words.clone();
+                hashes = otherStripe.hashes.clone();
+            }
+            for (int i = 0; i < words.length; i++) {
+                if (words[i] != null) {
+                    Stripe stripe = stripes[stripeShift == 32 ? 0 : hashes[i] >>> stripeShift];
+                    synchronized (stripe) {
+                        stripe.add(words[i], hashes[i]);
+                    }
+                }
+            }
+        }
+        totalCount.add(other.totalCount.sum());
+        return this;
+    }
+
+    /**
+     * The number of distinct words of this set.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The number of words added to this set, duplicates included.
+     */
+    public long totalCount() {
+        return totalCount.sum();
+    }
+
+    public int numberOfStripes() {
+        return stripes.length;
+    }
+
+    public Set<String> toSet() {
+        Set<String> set = new HashSet<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (String word : stripe.words) {
+                    if (word != null) {
+                        set.add(word);
+                    }
+                }
+            }
+        }
+        return set;
+    }
+
+    private static final class Stripe {
+
+        private String[] words = new String[MIN_STRIPE_CAPACITY];
+        private int[] hashes = new int[MIN_STRIPE_CAPACITY];
+        private int size;
+
+        private boolean add(String word, int hash) {
+            int mask = words.length - 1;
+            int slot = hash & mask;
+            while (words[slot] != null) {
+                if (hashes[slot] == hash && words[slot].equals(word)) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            words[slot] = word;
+            hashes[slot] = hash;
+            if (++size > words.length / 4 * 3) {
+                rehash();
+            }
+            return true;
+        }
+
+        private boolean contains(String word, int hash) {
+            int mask = words.length - 1;
+            int slot = hash & mask;
+            while (words[slot] != null) {
+                if (hashes[slot] == hash && words[slot].equals(word)) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        private void rehash() {
+            String[] oldWords = words;
+            int[] oldHashes = hashes;
+            words = new String[2 * oldWords.length];
+            hashes = new int[2 * oldWords.length];
+            size = 0;
+            for (int i = 0; i < oldWords.length; i++) {
+                if (oldWords[i] != null) {
+                    add(oldWords[i], oldHashes[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+
+/**
+ * Splits lines into words with the semantics of Pattern.compile("[" + separators + "]+").splitAsStream(),
+ * the separators being ASCII characters, without creating a String per word.
+ * <p/>
+ * The line is not copied: each word is given to the consumer as a Token, a CharSequence view on the
+ * line, from the start to the end of the word, that turns its chars to lower case as they are read if
+ * needed. The Token is reused for all the words: it is only valid during the call of the consumer,
+ * and toString() should be called to keep it.
+ * <p/>
+ * The counting() and distinct() collectors look the tokens up in a table keyed by String, with the
+ * hash code of the String computed from the token, and only create a String when they find a new word.
+ * <p/>
+ * The lower case conversion is done char by char with Character.toLowerCase(char): it is the one of
+ * String.toLowerCase(Locale.ROOT), except for the few characters whose lower case is not a single char.
+ * A Tokenizer is not thread safe, the collectors use a copy per accumulation container.
+ */
+public class Tokenizer {
+
+    private final boolean[] isSeparator;
+    private final boolean lowerCase;
+    private final Token token;
+
+    private Tokenizer(boolean[] isSeparator, boolean lowerCase) {
+        this.isSeparator = isSeparator;
+        this.lowerCase = lowerCase;
+        this.token = new Token(lowerCase);
+    }
+
+    public static Tokenizer of(String separators) {
+        boolean[] isSeparator = new boolean[128];
+        for (char separator : separators.toCharArray()) {
+            if (separator >= 128) {
+                throw new IllegalArgumentException("Not an ASCII separator: " + separator);
+            }
+            isSeparator[separator] = true;
+        }
+        return new Tokenizer(isSeparator, false);
+    }
+
+    /**
+     * A tokenizer with the same separators, that turns the words to lower case.
+     */
+    public Tokenizer lowerCase() {
+        return new Tokenizer(isSeparator, true);
+    }
+
+    /**
+     * A tokenizer with the same configuration, and its own buffer.
+     */
+    public Tokenizer copy() {
+        return new Tokenizer(isSeparator, lowerCase);
+    }
+
+    /**
+     * Tells if the char at this index of the line is a separator, once turned to lower case if needed.
+     */
+    private boolean isSeparator(CharSequence line, int index) {
+        char c = line.charAt(index);
+        if (lowerCase) {
+            c = Character.toLowerCase(c);
+        }
+        return c < 128 && isSeparator[c];
+    }
+
+    /**
+     * Calls the action with each word of this line. As with splitAsStream(), a line that starts with
+     * a separator gives a leading empty word, an empty line gives one empty word, and a line made
+     * of separators only gives no word.
+     */
+    public void forEachToken(CharSequence line, Consumer<? super CharSequence> action) {
+        int length = line.length();
+        if (length == 0) {
+            action.accept(token.set(line, 0, 0));
+            return;
+        }
+        int i = 0;
+        while (i < length && isSeparator(line, i)) {
+            i++;
+        }
+        if (i == length) {
+            return;
+        }
+        if (i > 0) {
+            action.accept(token.set(line, 0, 0));
+        }
+        while (i < length) {
+            int start = i;
+            while (i < length && !isSeparator(line, i)) {
+                i++;
+            }
+            action.accept(token.set(line, start, i));
+            while (i < length && isSeparator(line, i)) {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Returns a collector that counts the words of the lines it collects.
+     */
+    public static Collector<String, ?, Map<String, Long>> counting(Tokenizer tokenizer) {
+        return Collector.of(
+                () -> new TokenTable(tokenizer.copy()),
+                TokenTable::accept,
+                TokenTable::merge,
+                TokenTable::toMap);
+    }
+
+    /**
+     * Returns a collector of the distinct words of the lines it collects.
+     */
+    public static Collector<String, ?, Set<String>> distinct(Tokenizer tokenizer) {
+        return Collector.of(
+                () -> new TokenTable(tokenizer.copy()),
+                TokenTable::accept,
+                TokenTable::merge,
+                TokenTable::toSet,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * A view on the chars from start to end of a line, turned to lower case if needed. Its hash code
+     * is the one of the String with the same chars, but it is not equal to that String.
+     */
+    private static final class Token implements CharSequence {
+
+        private final boolean lowerCase;
+        private CharSequence line;
+        private int start;
+        private int end;
+        private int hash;
+
+        private Token(boolean lowerCase) {
+            this.lowerCase = lowerCase;
+        }
+
+        private Token set(CharSequence line, int start, int end) {
+            this.line = line;
+            this.start = start;
+            this.end = end;
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + charOfLine(i);
+            }
+            this.hash = hash;
+            return this;
+        }
+
+        private char charOfLine(int index) {
+            char c = line.charAt(index);
+            return lowerCase ? Character.toLowerCase(c) : c;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index " + index + " for a token of length " + (end - start));
+            }
+            return charOfLine(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        private boolean contentEquals(String word) {
+            if (word.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (word.charAt(i) != charOfLine(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            if (!lowerCase) {
+                return line.subSequence(start, end).toString();
+            }
+            char[] chars = new char[end - start];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = charOfLine(start + i);
+            }
+            return new String(chars);
+        }
+    }
+
+    /**
+     * An open addressing table of words and their counts, in which a word is looked up with a Token.
+     */
+    private static final class TokenTable {
+
+        private final Tokenizer tokenizer;
+        private final Consumer<CharSequence> addToken = token -> add((Token) token);
+        private String[] words = new String[64];
+        private int[] hashes = new int[64];
+        private long[] counts = new long[64];
+        private int size;
+
+        private TokenTable(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        private void accept(String line) {
+            tokenizer.forEachToken(line, addToken);
+        }
+
+        private void add(Token token) {
+            int mask = words.length - 1;
+            int slot = (token.hash ^ (token.hash >>> 16)) & mask;
+            while (words[slot] != null) {
+                if (hashes[slot] == token.hash && token.contentEquals(words[slot])) {
+                    counts[slot]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            insert(slot, token.toString(), token.hash, 1L);
+        }
+
+        private void add(String word, int hash, long count) {
+            int mask = words.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (words[slot] != null) {
+                if (hashes[slot] == hash && words[slot].equals(word)) {
+                    counts[slot] += count;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            insert(slot, word, hash, count);
+        }
+
+        private void insert(int slot, String word, int hash, long count) {
+            words[slot] = word;
+            hashes[slot] = hash;
+            counts[slot] = count;
+            if (++size > words.length / 4 * 3) {
+                rehash();
+            }
+        }
+
+        private void rehash() {
+            String[] oldWords = words;
+            int[] oldHashes = hashes;
+            long[] oldCounts = counts;
+            words = new String[2 * oldWords.length];
+            hashes = new int[2 * oldWords.length];
+            counts = new long[2 * oldWords.length];
+            size = 0;
+            for (int i = 0; i < oldWords.length; i++) {
+                if (oldWords[i] != null) {
+                    add(oldWords[i], oldHashes[i], oldCounts[i]);
+                }
+            }
+        }
+
+        private TokenTable merge(TokenTable other) {
+            for (int i = 0; i < other.words.length; i++) {
+                if (other.words[i] != null) {
+                    add(other.words[i], other.hashes[i], other.counts[i]);
+                }
+            }
+            return this;
+        }
+
+        private Map<String, Long> toMap() {
+            Map<String, Long> map = new HashMap<>(2 * size);
+            for (int i = 0; i < words.length; i++) {
+                if (words[i] != null) {
+                    map.put(words[i], counts[i]);
+                }
+            }
+            return map;
+        }
+
+        private Set<String> toSet() {
+            Set<String> set = new HashSet<>(2 * size);
+            for (String word : words) {
+                if (word != null) {
+                    set.add(word);
+                }
+            }
+            return set;
+        }
+    }
+}
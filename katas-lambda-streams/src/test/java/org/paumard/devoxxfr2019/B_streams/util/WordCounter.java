@@ -0,0 +1,547 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.B_streams.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Counts the words of text files of any size, with the semantics of
+ * reader.lines().flatMap(Pattern.compile("[" + separators + "]+")::splitAsStream), where
+ * the separators are ASCII characters.
+ * <p/>
+ * The text is read as bytes, and split without decoding it: in UTF-8, the bytes of an ASCII
+ * character never appear in the encoding of another character. The words are counted in an open
+ * addressing table keyed by their bytes, copied once in a byte[] arena, with long counts, so
+ * counting an already known word does not allocate anything. The words are only decoded to Strings
+ * when the counts are read.
+ * <p/>
+ * When the table exceeds its memory budget, its entries are sorted by bytes and written to a run
+ * file, then the table is cleared. Reading the counts then merges the runs and the table, so the
+ * memory needed to count a corpus is bounded by the budget, whatever the number of distinct words.
+ * The budget cannot be lower than MIN_MEMORY_BUDGET, the footprint of an empty table, or every new
+ * word would be spilled. At most MAX_FAN_IN runs are merged at a time: when there are more, they are
+ * first merged MAX_FAN_IN at a time into bigger runs, so that the number of open files stays bounded.
+ * The run files are deleted by close().
+ * <p/>
+ * As with String.split(), a line that starts with a separator gives a leading empty word, an empty
+ * line gives one empty word, and a line made of separators only gives no word. This class is not thread safe.
+ */
+public class WordCounter implements Closeable {
+
+    /**
+     * The separators of SPLIT_PATTERN, in the B_streams katas.
+     */
+    public static final String SPLIT_SEPARATORS = "- .:,";
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 1 << 6;
+    private static final int MIN_ARENA_CAPACITY = 1 << 10;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The memory used by an empty table.
+     */
+    public static final long MIN_MEMORY_BUDGET =
+            MIN_ARENA_CAPACITY + 4L * MIN_CAPACITY + 20L * (MIN_CAPACITY / 4 * 3 + 1);
+
+    static final int MAX_FAN_IN = 64;
+
+    private final boolean[] isSeparator = new boolean[128];
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private int numberOfSpills;
+
+    // the table of the words, the entries being the words in the order they were added
+    private int[] slots;
+    private int[] hashes;
+    private int[] keyOffsets;
+    private long[] counts;
+    private byte[] arena;
+    private int arenaSize;
+    private int size;
+
+    private long numberOfWords;
+
+    // the state of the tokenizer, kept between two buffers
+    private byte[] token = new byte[64];
+    private int tokenLength;
+    private boolean lineStarted;
+    private boolean leadingSeparator;
+    private boolean wordInLine;
+    private boolean afterCarriageReturn;
+
+    private WordCounter(String separators, long memoryBudget, Path spillDirectory) {
+        for (char separator : separators.toCharArray()) {
+            if (separator >= 128 || separator == '\n' || separator == '\r') {
+                throw new IllegalArgumentException("Not an ASCII separator: " + separator);
+            }
+            isSeparator[separator] = true;
+        }
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+        allocate(MIN_CAPACITY, MIN_ARENA_CAPACITY);
+    }
+
+    /**
+     * A counter with the default memory budget, that spills in the temporary directory.
+     */
+    public static WordCounter of(String separators) {
+        return of(separators, DEFAULT_MEMORY_BUDGET, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * A counter that spills its table in spillDirectory when it takes more than about memoryBudget bytes.
+     */
+    public static WordCounter of(String separators, long memoryBudget, Path spillDirectory) {
+        if (memoryBudget < MIN_MEMORY_BUDGET) {
+            throw new IllegalArgumentException("The memory budget should be at least " + MIN_MEMORY_BUDGET + ": " + memoryBudget);
+        }
+        return new WordCounter(separators, memoryBudget, spillDirectory);
+    }
+
+    private void allocate(int capacity, int arenaCapacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        hashes = new int[capacity / 4 * 3 + 1];
+        keyOffsets = new int[capacity / 4 * 3 + 2];
+        counts = new long[capacity / 4 * 3 + 1];
+        arena = new byte[arenaCapacity];
+        arenaSize = 0;
+        size = 0;
+    }
+
+    /**
+     * Counts the words of this file, read as UTF-8.
+     */
+    public WordCounter countWords(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return countWords(inputStream);
+        }
+    }
+
+    /**
+     * Counts the words of this stream, read as UTF-8. The stream is not closed.
+     */
+    public WordCounter countWords(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                accept(buffer[i]);
+            }
+        }
+        if (lineStarted) {
+            endLine();
+        }
+        return this;
+    }
+
+    private void accept(byte b) throws IOException {
+        if (b == '\n' || b == '\r') {
+            if (b == '\r' || !afterCarriageReturn) {
+                endLine();
+            }
+            afterCarriageReturn = b == '\r';
+            return;
+        }
+        afterCarriageReturn = false;
+        if (b >= 0 && isSeparator[b]) {
+            if (!lineStarted) {
+                leadingSeparator = true;
+            } else if (tokenLength > 0) {
+                endToken();
+            }
+        } else {
+            if (tokenLength == token.length) {
+                token = Arrays.copyOf(token, 2 * token.length);
+            }
+            token[tokenLength++] = b;
+        }
+        lineStarted = true;
+    }
+
+    private void endToken() throws IOException {
+        if (leadingSeparator && !wordInLine) {
+            add(token, 0, 0);
+        }
+        add(token, 0, tokenLength);
+        tokenLength = 0;
+        wordInLine = true;
+    }
+
+    private void endLine() throws IOException {
+        if (!lineStarted) {
+            add(token, 0, 0);
+        } else if (tokenLength > 0) {
+            endToken();
+        }
+        lineStarted = false;
+        leadingSeparator = false;
+        wordInLine = false;
+    }
+
+    /**
+     * Adds one to the count of the word written with these bytes.
+     */
+    private void add(byte[] bytes, int from, int to) throws IOException {
+        numberOfWords++;
+        int hash = hash(bytes, from, to);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != EMPTY) {
+            int entry = slots[slot];
+            if (hashes[entry] == hash && equals(entry, bytes, from, to)) {
+                counts[entry]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int length = to - from;
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(2 * arena.length, arenaSize + length));
+        }
+        System.arraycopy(bytes, from, arena, arenaSize, length);
+        slots[slot] = size;
+        hashes[size] = hash;
+        keyOffsets[size] = arenaSize;
+        counts[size] = 1L;
+        arenaSize += length;
+        keyOffsets[++size] = arenaSize;
+        if (memoryUsed() > memoryBudget) {
+            spill();
+        } else if (size == hashes.length) {
+            rehash();
+        }
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean equals(int entry, byte[] bytes, int from, int to) {
+        int offset = keyOffsets[entry];
+        int length = keyOffsets[entry + 1] - offset;
+        if (length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (arena[offset + i] != bytes[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long memoryUsed() {
+        return arena.length + 4L * slots.length + 20L * hashes.length;
+    }
+
+    private void rehash() {
+        int capacity = 2 * slots.length;
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        int entries = capacity / 4 * 3 + 1;
+        hashes = Arrays.copyOf(hashes, entries);
+        keyOffsets = Arrays.copyOf(keyOffsets, entries + 1);
+        counts = Arrays.copyOf(counts, entries);
+        int mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hashes[entry] & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry;
+        }
+    }
+
+    /**
+     * Writes the entries of the table, sorted by bytes, in a new run file, and clears the table.
+     */
+    private void spill() throws IOException {
+        try (DataOutputStream output = newRun()) {
+            for (int entry : sortedEntries()) {
+                int offset = keyOffsets[entry];
+                write(output, arena, offset, keyOffsets[entry + 1] - offset, counts[entry]);
+            }
+        }
+        numberOfSpills++;
+        allocate(MIN_CAPACITY, MIN_ARENA_CAPACITY);
+    }
+
+    /**
+     * Creates a new run file, that close() deletes, and opens it.
+     */
+    private DataOutputStream newRun() throws IOException {
+        Path run = Files.createTempFile(spillDirectory, "words-", ".run");
+        runs.add(run);
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE));
+    }
+
+    private static void write(DataOutputStream output, byte[] bytes, int from, int length, long count) throws IOException {
+        output.writeInt(length);
+        output.write(bytes, from, length);
+        output.writeLong(count);
+    }
+
+    private int[] sortedEntries() {
+        return IntStream.range(0, size)
+                .boxed()
+                .sorted((entry1, entry2) -> compare(
+                        arena, keyOffsets[entry1], keyOffsets[entry1 + 1],
+                        arena, keyOffsets[entry2], keyOffsets[entry2 + 1]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static int compare(byte[] bytes1, int from1, int to1, byte[] bytes2, int from2, int to2) {
+        int length = Math.min(to1 - from1, to2 - from2);
+        for (int i = 0; i < length; i++) {
+            int compare = Integer.compare(bytes1[from1 + i] & 0xFF, bytes2[from2 + i] & 0xFF);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(to1 - from1, to2 - from2);
+    }
+
+    /**
+     * The number of words counted, duplicates included.
+     */
+    public long numberOfWords() {
+        return numberOfWords;
+    }
+
+    /**
+     * The number of run files written so far.
+     */
+    public int numberOfSpills() {
+        return numberOfSpills;
+    }
+
+    /**
+     * Calls the consumer with each distinct word and its count, in the order of the UTF-8 bytes of
+     * the words, that is the order of their code points. The runs and the table are merged on the fly,
+     * once there are less than MAX_FAN_IN runs.
+     */
+    public void forEach(ObjLongConsumer<String> consumer) throws IOException {
+        while (runs.size() >= MAX_FAN_IN) {
+            mergeFirstRuns();
+        }
+        List<Cursor> cursors = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                cursors.add(new RunCursor(run));
+            }
+            cursors.add(new TableCursor(sortedEntries()));
+            merge(cursors, (word, count) -> consumer.accept(new String(word, StandardCharsets.UTF_8), count));
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Merges the first MAX_FAN_IN runs into a new run, added after the others, and deletes them.
+     */
+    private void mergeFirstRuns() throws IOException {
+        List<Path> merged = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+        List<Cursor> cursors = new ArrayList<>();
+        try {
+            for (Path run : merged) {
+                cursors.add(new RunCursor(run));
+            }
+            try (DataOutputStream output = newRun()) {
+                merge(cursors, (word, count) -> write(output, word, 0, word.length, count));
+            }
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+        for (Path run : merged) {
+            Files.delete(run);
+        }
+        runs.subList(0, MAX_FAN_IN).clear();
+    }
+
+    @FunctionalInterface
+    private interface WordConsumer {
+
+        void accept(byte[] word, long count) throws IOException;
+    }
+
+    /**
+     * A k-way merge of these sorted cursors, that sums the counts of the same word.
+     */
+    private static void merge(List<Cursor> sources, WordConsumer consumer) throws IOException {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+        for (Cursor cursor : sources) {
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+        while (!cursors.isEmpty()) {
+            Cursor first = cursors.poll();
+            byte[] word = Arrays.copyOf(first.word, first.length);
+            long count = 0L;
+            for (Cursor cursor = first; cursor != null; cursor = sameWord(cursors, word)) {
+                count += cursor.count;
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                }
+            }
+            consumer.accept(word, count);
+        }
+    }
+
+    private static Cursor sameWord(PriorityQueue<Cursor> cursors, byte[] word) {
+        Cursor next = cursors.peek();
+        if (next != null && compare(next.word, 0, next.length, word, 0, word.length) == 0) {
+            return cursors.poll();
+        }
+        return null;
+    }
+
+    /**
+     * The counts of the words, in a map. Only use it if the distinct words fit in memory.
+     */
+    public Map<String, Long> toMap() throws IOException {
+        Map<String, Long> map = new HashMap<>();
+        forEach(map::put);
+        return map;
+    }
+
+    /**
+     * Deletes the run files.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    /**
+     * A sorted source of words and counts, the current word being the length first bytes of word.
+     */
+    private abstract static class Cursor implements Comparable<Cursor>, Closeable {
+
+        byte[] word = new byte[64];
+        int length;
+        long count;
+
+        abstract boolean next() throws IOException;
+
+        void setWord(byte[] bytes, int from, int length) {
+            if (length > word.length) {
+                word = new byte[Math.max(length, 2 * word.length)];
+            }
+            System.arraycopy(bytes, from, word, 0, length);
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return compare(word, 0, length, other.word, 0, other.length);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private class TableCursor extends Cursor {
+
+        private final int[] entries;
+        private int index;
+
+        private TableCursor(int[] entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        boolean next() {
+            if (index == entries.length) {
+                return false;
+            }
+            int entry = entries[index++];
+            setWord(arena, keyOffsets[entry], keyOffsets[entry + 1] - keyOffsets[entry]);
+            count = counts[entry];
+            return true;
+        }
+    }
+
+    private static class RunCursor extends Cursor {
+
+        private final DataInputStream input;
+
+        private RunCursor(Path run) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            int length;
+            try {
+                length = input.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (length > word.length) {
+                word = new byte[Math.max(length, 2 * word.length)];
+            }
+            input.readFully(word, 0, length);
+            this.length = length;
+            count = input.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
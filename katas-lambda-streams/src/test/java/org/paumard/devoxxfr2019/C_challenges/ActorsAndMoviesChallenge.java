@@ -21,16 +21,10 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.paumard.devoxxfr2019.C_challenges.model.Actor;
 import org.paumard.devoxxfr2019.C_challenges.model.Movie;
+import org.paumard.devoxxfr2019.C_challenges.util.MovieSnapshot;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -239,41 +233,8 @@ public class ActorsAndMoviesChallenge {
     @Before
     public void z_setupData() {
 
-        Function<String, Stream<Movie>> toMovie =
-                line -> {
-                    String[] elements = line.split("/");
-                    String title = elements[0].substring(0, elements[0].lastIndexOf("(")).trim();
-                    String releaseYear = elements[0].substring(elements[0].lastIndexOf("(") + 1, elements[0].lastIndexOf(")"));
-                    if (releaseYear.contains(",")) {
-                        // Movies with a coma in their title are discarded
-                        return Stream.empty();
-                    }
-                    Movie movie = new Movie(title, Integer.valueOf(releaseYear));
-
-
-                    for (int i = 1; i < elements.length; i++) {
-                        String[] name = elements[i].split(", ");
-                        String lastName = name[0].trim();
-                        String firstName = "";
-                        if (name.length > 1) {
-                            firstName = name[1].trim();
-                        }
-
-                        Actor actor = new Actor(lastName, firstName);
-                        movie.addActor(actor);
-                    }
-                    return Stream.of(movie);
-                };
-
-        try (FileInputStream fis = new FileInputStream("files/movies/movies-mpaa.txt.gz");
-             GZIPInputStream gzis = new GZIPInputStream(fis);
-             InputStreamReader reader = new InputStreamReader(gzis);
-             BufferedReader bufferedReader = new BufferedReader(reader);
-             Stream<String> lines = bufferedReader.lines();
-        ) {
-
-            movies = lines.flatMap(toMovie).collect(Collectors.toSet());
-
+        try {
+            movies = MovieSnapshot.openOrConvert(MovieSnapshot.MOVIES, MovieSnapshot.SNAPSHOT).movies();
         } catch (IOException e) {
             System.out.println("e.getMessage() = " + e.getMessage());
         }
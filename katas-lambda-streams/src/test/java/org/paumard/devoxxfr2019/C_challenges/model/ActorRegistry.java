@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.model;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The dictionary of the actors of the movie database. Each distinct (lastName, firstName)
+ * is given a dense int id, from 0 to size() - 1.
+ * <p/>
+ * The ids follow the alphabetical order of the actors, by last name then first name.
+ * Comparing two ids is thus the same as comparing the two actors with ACTOR_ORDER, which is
+ * what the pair queries need.
+ */
+public class ActorRegistry {
+
+    public static final Comparator<Actor> ACTOR_ORDER =
+            Comparator.comparing(Actor::lastName).thenComparing(Actor::firstName);
+
+    private final Actor[] actors;
+    private final Map<Actor, Integer> ids;
+
+    private ActorRegistry(Actor[] actors) {
+        this.actors = actors;
+        this.ids = new HashMap<>(2 * actors.length);
+        for (int id = 0; id < actors.length; id++) {
+            ids.put(actors[id], id);
+        }
+    }
+
+    /**
+     * Builds the registry from actors already sorted with ACTOR_ORDER and distinct,
+     * as read from a snapshot. The array is not copied.
+     */
+    public static ActorRegistry ofSorted(Actor[] actors) {
+        return new ActorRegistry(actors);
+    }
+
+    /**
+     * Builds the registry of all the actors that played in the given movies.
+     */
+    public static ActorRegistry of(Collection<Movie> movies) {
+        Actor[] actors = movies.stream()
+                .flatMap(movie -> movie.actors().stream())
+                .distinct()
+                .sorted(ACTOR_ORDER)
+                .toArray(Actor[]::new);
+        return new ActorRegistry(actors);
+    }
+
+    public int size() {
+        return actors.length;
+    }
+
+    /**
+     * Returns the id of this actor, or -1 if this actor is not in the registry.
+     */
+    public int id(Actor actor) {
+        return ids.getOrDefault(actor, -1);
+    }
+
+    public int id(String lastName, String firstName) {
+        return id(new Actor(lastName, firstName));
+    }
+
+    /**
+     * Returns the interned Actor object of this id.
+     */
+    public Actor actor(int id) {
+        return actors[id];
+    }
+
+    /**
+     * Converts a movie to its int based variant. The actors of this movie must be in the registry.
+     */
+    public IndexedMovie index(Movie movie) {
+        int[] cast = movie.actors().stream().mapToInt(this::id).sorted().toArray();
+        return new IndexedMovie(movie.title(), movie.releaseYear(), cast);
+    }
+
+    public List<IndexedMovie> index(Collection<Movie> movies) {
+        return movies.stream().map(this::index).collect(Collectors.toList());
+    }
+
+    /**
+     * Converts an int based movie back to a Movie, sharing the interned Actor objects.
+     */
+    public Movie movie(IndexedMovie indexedMovie) {
+        Movie movie = new Movie(indexedMovie.title(), indexedMovie.releaseYear());
+        for (int id : indexedMovie.actors()) {
+            movie.addActor(actors[id]);
+        }
+        return movie;
+    }
+
+    @Override
+    public String toString() {
+        return "ActorRegistry{" + "size=" + actors.length + '}';
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.model;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A variant of Movie that stores its actors as the sorted array of their ids in an ActorRegistry.
+ */
+public class IndexedMovie {
+    private final String title ;
+    private final int releaseYear ;
+
+    private final int[] actors ;
+
+    public IndexedMovie(String title, int releaseYear, int[] actors) {
+        this.title = title;
+        this.releaseYear = releaseYear;
+        this.actors = actors;
+    }
+
+    public String title() {
+        return this.title ;
+    }
+
+    public int releaseYear() {
+        return this.releaseYear ;
+    }
+
+    /**
+     * The sorted ids of the actors of this movie. This array is shared, and should not be modified.
+     */
+    public int[] actors() {
+        return this.actors ;
+    }
+
+    public IntStream actorStream() {
+        return Arrays.stream(this.actors) ;
+    }
+
+    public int numberOfActors() {
+        return this.actors.length ;
+    }
+
+    public boolean hasActor(int actorId) {
+        return Arrays.binarySearch(this.actors, actorId) >= 0 ;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedMovie{" + "title=" + title + ", releaseYear=" + releaseYear + ", actors=" + Arrays.toString(actors) + '}';
+    }
+}
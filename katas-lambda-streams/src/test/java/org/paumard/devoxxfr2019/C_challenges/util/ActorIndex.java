@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import org.paumard.devoxxfr2019.C_challenges.model.IndexedMovie;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An inverted index from the actors to the movies they played in, the movies being identified
+ * by their index in the list of IndexedMovie the index is built from.
+ * <p/>
+ * The posting lists are stored in a single int[], sorted by actor id, then by movie id,
+ * along with the offset of the list of each actor. The actors are also sorted by their number
+ * of movies, so that the most prolific actors can be read without scanning the index.
+ */
+public class ActorIndex {
+
+    private final int[] offsets;
+    private final int[] movieIds;
+    private final int[] actorsByNumberOfMovies;
+
+    private ActorIndex(int[] offsets, int[] movieIds) {
+        this.offsets = offsets;
+        this.movieIds = movieIds;
+        this.actorsByNumberOfMovies = sortByNumberOfMovies();
+    }
+
+    /**
+     * A counting sort of the actors by decreasing number of movies, that keeps the actors that have
+     * the same number of movies sorted by id.
+     */
+    private int[] sortByNumberOfMovies() {
+        int numberOfActors = numberOfActors();
+        int maxNumberOfMovies = 0;
+        for (int actor = 0; actor < numberOfActors; actor++) {
+            maxNumberOfMovies = Math.max(maxNumberOfMovies, numberOfMovies(actor));
+        }
+        // next[n] is the position of the next actor with n movies, after the actors with more movies
+        int[] next = new int[maxNumberOfMovies + 1];
+        for (int actor = 0; actor < numberOfActors; actor++) {
+            next[numberOfMovies(actor)]++;
+        }
+        int position = 0;
+        for (int n = maxNumberOfMovies; n >= 0; n--) {
+            int count = next[n];
+            next[n] = position;
+            position += count;
+        }
+        int[] actors = new int[numberOfActors];
+        for (int actor = 0; actor < numberOfActors; actor++) {
+            actors[next[numberOfMovies(actor)]++] = actor;
+        }
+        return actors;
+    }
+
+    /**
+     * Builds the index of these movies, in two passes over their casts: the first one counts the
+     * movies of each actor, the second one fills the posting lists.
+     */
+    public static ActorIndex of(List<IndexedMovie> movies, int numberOfActors) {
+        int[] offsets = new int[numberOfActors + 1];
+        for (IndexedMovie movie : movies) {
+            for (int actor : movie.actors()) {
+                offsets[actor + 1]++;
+            }
+        }
+        for (int actor = 0; actor < numberOfActors; actor++) {
+            offsets[actor + 1] += offsets[actor];
+        }
+        int[] movieIds = new int[offsets[numberOfActors]];
+        int[] next = Arrays.copyOf(offsets, numberOfActors);
+        for (int movieId = 0; movieId < movies.size(); movieId++) {
+            for (int actor : movies.get(movieId).actors()) {
+                movieIds[next[actor]++] = movieId;
+            }
+        }
+        return new ActorIndex(offsets, movieIds);
+    }
+
+    public int numberOfActors() {
+        return offsets.length - 1;
+    }
+
+    public int numberOfMovies(int actor) {
+        return offsets[actor + 1] - offsets[actor];
+    }
+
+    /**
+     * The sorted ids of the movies this actor played in.
+     */
+    public int[] filmography(int actor) {
+        return Arrays.copyOfRange(movieIds, offsets[actor], offsets[actor + 1]);
+    }
+
+    /**
+     * The sorted ids of the movies both actors played in, computed by merging their posting lists.
+     */
+    public int[] coAppearances(int actor1, int actor2) {
+        int i = offsets[actor1], end1 = offsets[actor1 + 1];
+        int j = offsets[actor2], end2 = offsets[actor2 + 1];
+        int[] result = new int[Math.min(end1 - i, end2 - j)];
+        int size = 0;
+        while (i < end1 && j < end2) {
+            if (movieIds[i] < movieIds[j]) {
+                i++;
+            } else if (movieIds[i] > movieIds[j]) {
+                j++;
+            } else {
+                result[size++] = movieIds[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public int numberOfCoAppearances(int actor1, int actor2) {
+        return coAppearances(actor1, actor2).length;
+    }
+
+    /**
+     * The actors that played in at least n movies, the most prolific first.
+     */
+    public int[] actorsWithAtLeast(int n) {
+        int low = 0, high = actorsByNumberOfMovies.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (numberOfMovies(actorsByNumberOfMovies[middle]) >= n) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return Arrays.copyOf(actorsByNumberOfMovies, low);
+    }
+
+    /**
+     * The actor that played in the greatest number of movies, the smallest id winning ties.
+     * Throws a NoSuchElementException if this index has no actor.
+     */
+    public int mostProlificActor() {
+        if (actorsByNumberOfMovies.length == 0) {
+            throw new NoSuchElementException("This index has no actor");
+        }
+        return actorsByNumberOfMovies[0];
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An index of words by their signature, that is the histogram of their letters. Two words
+ * are anagrams if and only if they have the same signature.
+ * <p/>
+ * A signature is packed in two longs, 4 bits per letter: the letters from a to m in the high long,
+ * the letters from n to z in the low long, so a letter can appear at most 15 times in a word.
+ * The distinct signatures are sorted, and looked up by binary search. The words of a signature
+ * are stored contiguously, in the alphabetical order.
+ */
+public class AnagramIndex {
+
+    private static final int LETTERS_PER_LONG = 13;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] highSignatures;
+    private final long[] lowSignatures;
+    private final int[] offsets;
+    private final String[] words;
+
+    private AnagramIndex(long[] highSignatures, long[] lowSignatures, int[] offsets, String[] words) {
+        this.highSignatures = highSignatures;
+        this.lowSignatures = lowSignatures;
+        this.offsets = offsets;
+        this.words = words;
+    }
+
+    /**
+     * Builds the index of these words, that must only have lower case letters from a to z.
+     * Duplicates are ignored.
+     */
+    public static AnagramIndex of(Collection<String> words) {
+        String[] distinctWords = words.stream().distinct().toArray(String[]::new);
+        long[] highs = new long[distinctWords.length];
+        long[] lows = new long[distinctWords.length];
+        for (int word = 0; word < distinctWords.length; word++) {
+            int[] histogram = histogram(distinctWords[word]);
+            highs[word] = high(histogram);
+            lows[word] = low(histogram);
+        }
+        Comparator<Integer> bySignature =
+                Comparator.<Integer>comparingLong(word -> highs[word])
+                        .thenComparingLong(word -> lows[word])
+                        .thenComparing(word -> distinctWords[word]);
+        int[] sorted =
+                IntStream.range(0, distinctWords.length)
+                        .boxed()
+                        .sorted(bySignature)
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+
+        long[] highSignatures = new long[sorted.length];
+        long[] lowSignatures = new long[sorted.length];
+        int[] offsets = new int[sorted.length + 1];
+        String[] sortedWords = new String[sorted.length];
+        int numberOfSignatures = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            int word = sorted[i];
+            if (numberOfSignatures == 0 ||
+                    highSignatures[numberOfSignatures - 1] != highs[word] ||
+                    lowSignatures[numberOfSignatures - 1] != lows[word]) {
+                highSignatures[numberOfSignatures] = highs[word];
+                lowSignatures[numberOfSignatures] = lows[word];
+                offsets[numberOfSignatures] = i;
+                numberOfSignatures++;
+            }
+            sortedWords[i] = distinctWords[word];
+        }
+        offsets[numberOfSignatures] = sorted.length;
+        return new AnagramIndex(
+                Arrays.copyOf(highSignatures, numberOfSignatures),
+                Arrays.copyOf(lowSignatures, numberOfSignatures),
+                Arrays.copyOf(offsets, numberOfSignatures + 1),
+                sortedWords);
+    }
+
+    private static int[] histogram(CharSequence letters) {
+        int[] histogram = new int[WordScoreTable.NUMBER_OF_LETTERS];
+        for (int i = 0; i < letters.length(); i++) {
+            int letter = letters.charAt(i) - 'a';
+            if (letter < 0 || letter >= WordScoreTable.NUMBER_OF_LETTERS) {
+                throw new IllegalArgumentException("Not a lower case word: " + letters);
+            }
+            if (++histogram[letter] > MAX_COUNT) {
+                throw new IllegalArgumentException("Too many " + letters.charAt(i) + " in " + letters);
+            }
+        }
+        return histogram;
+    }
+
+    private static long high(int[] histogram) {
+        long signature = 0L;
+        for (int letter = 0; letter < LETTERS_PER_LONG; letter++) {
+            signature |= (long) histogram[letter] << (4 * letter);
+        }
+        return signature;
+    }
+
+    private static long low(int[] histogram) {
+        long signature = 0L;
+        for (int letter = LETTERS_PER_LONG; letter < WordScoreTable.NUMBER_OF_LETTERS; letter++) {
+            signature |= (long) histogram[letter] << (4 * (letter - LETTERS_PER_LONG));
+        }
+        return signature;
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    public int numberOfSignatures() {
+        return highSignatures.length;
+    }
+
+    /**
+     * The words written with exactly these letters, in the alphabetical order.
+     */
+    public List<String> anagrams(CharSequence letters) {
+        int[] histogram = histogram(letters);
+        int signature = find(high(histogram), low(histogram));
+        return signature < 0 ? List.of() : words(signature);
+    }
+
+    /**
+     * The words that can be written with some of these letters, each letter being used at most
+     * as many times as it appears. The sub-multisets of the letters are enumerated, and each of
+     * them is looked up in the index, so the cost depends on the letters, not on the size of the index.
+     */
+    public List<String> wordsWithin(CharSequence letters) {
+        int[] histogram = histogram(letters);
+        List<String> result = new ArrayList<>();
+        collectWithin(histogram, 0, 0L, 0L, result);
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    private void collectWithin(int[] histogram, int letter, long high, long low, List<String> result) {
+        while (letter < WordScoreTable.NUMBER_OF_LETTERS && histogram[letter] == 0) {
+            letter++;
+        }
+        if (letter == WordScoreTable.NUMBER_OF_LETTERS) {
+            int signature = find(high, low);
+            if (signature >= 0) {
+                result.addAll(words(signature));
+            }
+            return;
+        }
+        for (long count = 0; count <= histogram[letter]; count++) {
+            if (letter < LETTERS_PER_LONG) {
+                collectWithin(histogram, letter + 1, high | count << (4 * letter), low, result);
+            } else {
+                collectWithin(histogram, letter + 1, high, low | count << (4 * (letter - LETTERS_PER_LONG)), result);
+            }
+        }
+    }
+
+    /**
+     * The groups of at least two words that are anagrams of each other.
+     */
+    public Stream<List<String>> anagramClasses() {
+        return IntStream.range(0, highSignatures.length)
+                .filter(signature -> offsets[signature + 1] - offsets[signature] > 1)
+                .mapToObj(this::words);
+    }
+
+    private List<String> words(int signature) {
+        return Arrays.asList(Arrays.copyOfRange(words, offsets[signature], offsets[signature + 1]));
+    }
+
+    /**
+     * Returns the index of this signature, or -1 if no word has it.
+     */
+    private int find(long high, long low) {
+        int from = 0, to = highSignatures.length - 1;
+        while (from <= to) {
+            int middle = (from + to) >>> 1;
+            int compare = highSignatures[middle] != high ?
+                    Long.compare(highSignatures[middle], high) :
+                    Long.compare(lowSignatures[middle], low);
+            if (compare < 0) {
+                from = middle + 1;
+            } else if (compare > 0) {
+                to = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+}
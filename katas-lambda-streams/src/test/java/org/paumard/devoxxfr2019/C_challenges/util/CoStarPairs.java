@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import org.paumard.devoxxfr2019.B_streams.util.HyperLogLog;
+import org.paumard.devoxxfr2019.C_challenges.model.IndexedMovie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the pairs of actors that played together, the answer to actorsAndMovies08 and 09.
+ * <p/>
+ * Since the actors of an IndexedMovie are sorted ids, the pairs {A, B} with A &lt; B of a movie
+ * are read directly from its array, encoded in a long, and counted in a PairCountTable.
+ * No object is created per pair.
+ * <p/>
+ * The parallel mode splits the movies in chunks of about the same number of pairs, processed
+ * by a fork/join pool. Each chunk counts its pairs in its own set of tables, one per shard, the
+ * shard of a pair being given by its hash. The tables of a given shard are then merged by a single
+ * MergeTask, in the same pool, so that the merge does not need any lock, and the result is kept
+ * as one table per shard.
+ */
+public class CoStarPairs {
+
+    private final PairCountTable[] shards;
+    private final int shardBits;
+    private final long totalNumberOfPairs;
+
+    private CoStarPairs(PairCountTable[] shards, int shardBits, long totalNumberOfPairs) {
+        this.shards = shards;
+        this.shardBits = shardBits;
+        this.totalNumberOfPairs = totalNumberOfPairs;
+    }
+
+    /**
+     * Counts all the pairs of actors of these movies, in the calling thread. The table is sized
+     * from an estimate of the number of unique pairs, and grows if this estimate is too low.
+     */
+    public static CoStarPairs count(Collection<IndexedMovie> movies) {
+        long totalNumberOfPairs = movies.stream().mapToLong(CoStarPairs::numberOfPairs).sum();
+        PairCountTable table = new PairCountTable((int) Math.min(estimateUniquePairs(movies), 1 << 29));
+        for (IndexedMovie movie : movies) {
+            countPairs(movie.actors(), table);
+        }
+        return new CoStarPairs(new PairCountTable[]{table}, 0, totalNumberOfPairs);
+    }
+
+    /**
+     * Estimates the number of unique pairs of actors of these movies with a HyperLogLog sketch,
+     * in one pass over the pairs that does not allocate anything.
+     */
+    static long estimateUniquePairs(Collection<IndexedMovie> movies) {
+        HyperLogLog uniquePairs = HyperLogLog.of();
+        for (IndexedMovie movie : movies) {
+            int[] actors = movie.actors();
+            for (int i = 0; i < actors.length; i++) {
+                long first = (long) actors[i] << 32;
+                for (int j = i + 1; j < actors.length; j++) {
+                    uniquePairs.addHash(hash(first | actors[j]));
+                }
+            }
+        }
+        return uniquePairs.distinctCount();
+    }
+
+    /**
+     * The finalization step of MurmurHash3, so that all the bits of the hash depend on both actors.
+     */
+    private static long hash(long pair) {
+        pair ^= pair >>> 33;
+        pair *= 0xFF51AFD7ED558CCDL;
+        pair ^= pair >>> 33;
+        pair *= 0xC4CEB9FE1A85EC53L;
+        pair ^= pair >>> 33;
+        return pair;
+    }
+
+    /**
+     * Counts all the pairs of actors of these movies in the common fork/join pool.
+     */
+    public static CoStarPairs countInParallel(List<IndexedMovie> movies) {
+        return countInParallel(movies, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts all the pairs of actors of these movies in the given fork/join pool.
+     */
+    public static CoStarPairs countInParallel(List<IndexedMovie> movies, ForkJoinPool pool) {
+        int parallelism = pool.getParallelism();
+        int shardBits = Math.min(10, 32 - Integer.numberOfLeadingZeros(4 * parallelism - 1));
+        int numberOfShards = 1 << shardBits;
+
+        long[] cumulatedPairs = new long[movies.size() + 1];
+        for (int i = 0; i < movies.size(); i++) {
+            cumulatedPairs[i + 1] = cumulatedPairs[i] + numberOfPairs(movies.get(i));
+        }
+        long totalNumberOfPairs = cumulatedPairs[movies.size()];
+        long pairsPerChunk = Math.max(1L << 14, totalNumberOfPairs / (8L * parallelism));
+
+        List<PairCountTable[]> chunks =
+                pool.invoke(new ChunkTask(movies, cumulatedPairs, 0, movies.size(), pairsPerChunk, shardBits));
+
+        PairCountTable[] shards = new PairCountTable[numberOfShards];
+        pool.invoke(new MergeTask(chunks, shards, 0, numberOfShards));
+
+        return new CoStarPairs(shards, shardBits, totalNumberOfPairs);
+    }
+
+    /**
+     * Finds the k pairs that played together the most, year by year, the answer to actorsAndMovies10.
+     * <p/>
+     * The movies are processed one year at a time, following a YearIndex, in a single PairCountTable
+     * that is cleared and reused from one year to the next, and only the k best pairs of each year
+     * are kept. The table grows to the number of unique pairs of the year that has the most of them,
+     * and keeps its capacity, so the memory needed is driven by that year, not by the whole database.
+     * <p/>
+     * A year whose movies all have less than two actors has no pair, and is not in the map.
+     */
+    public static SortedMap<Integer, List<PairCount>> topPairsPerYear(List<IndexedMovie> movies, int k) {
+        PairCountTable.checkK(k);
+        YearIndex years = YearIndex.of(movies);
+        PairCountTable table = new PairCountTable();
+
+        SortedMap<Integer, List<PairCount>> topPairsPerYear = new TreeMap<>();
+        for (int year = years.firstYear(); year <= years.lastYear(); year++) {
+            table.clear();
+            for (int movieId : years.movies(year)) {
+                countPairs(movies.get(movieId).actors(), table);
+            }
+            if (table.size() > 0) {
+                topPairsPerYear.put(year, table.top(k));
+            }
+        }
+        return topPairsPerYear;
+    }
+
+    private static class ChunkTask extends RecursiveTask<List<PairCountTable[]>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<IndexedMovie> movies;
+        private final long[] cumulatedPairs;
+        private final int from, to;
+        private final long pairsPerChunk;
+        private final int shardBits;
+
+        ChunkTask(List<IndexedMovie> movies, long[] cumulatedPairs, int from, int to, long pairsPerChunk, int shardBits) {
+            this.movies = movies;
+            this.cumulatedPairs = cumulatedPairs;
+            this.from = from;
+            this.to = to;
+            this.pairsPerChunk = pairsPerChunk;
+            this.shardBits = shardBits;
+        }
+
+        @Override
+        protected List<PairCountTable[]> compute() {
+            long numberOfPairs = cumulatedPairs[to] - cumulatedPairs[from];
+            if (numberOfPairs <= pairsPerChunk || to - from == 1) {
+                List<PairCountTable[]> result = new ArrayList<>();
+                result.add(countChunk(numberOfPairs));
+                return result;
+            }
+            int middle = middle(cumulatedPairs[from] + numberOfPairs / 2);
+            ChunkTask left = new ChunkTask(movies, cumulatedPairs, from, middle, pairsPerChunk, shardBits);
+            ChunkTask right = new ChunkTask(movies, cumulatedPairs, middle, to, pairsPerChunk, shardBits);
+            left.fork();
+            List<PairCountTable[]> result = right.compute();
+            result.addAll(left.join());
+            return result;
+        }
+
+        /**
+         * The index that splits [from, to) in two ranges with about the same number of pairs,
+         * both ranges being non empty.
+         */
+        private int middle(long halfPairs) {
+            int low = from + 1, high = to - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulatedPairs[middle] < halfPairs) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private PairCountTable[] countChunk(long numberOfPairs) {
+            int numberOfShards = 1 << shardBits;
+            PairCountTable[] tables = new PairCountTable[numberOfShards];
+            int expectedSize = (int) Math.min(numberOfPairs / numberOfShards + 1, 1 << 29);
+            for (int shard = 0; shard < numberOfShards; shard++) {
+                tables[shard] = new PairCountTable(expectedSize);
+            }
+            for (int i = from; i < to; i++) {
+                int[] actors = movies.get(i).actors();
+                for (int a1 = 0; a1 < actors.length; a1++) {
+                    long first = (long) actors[a1] << 32;
+                    for (int a2 = a1 + 1; a2 < actors.length; a2++) {
+                        long pair = first | actors[a2];
+                        tables[shard(pair, shardBits)].increment(pair);
+                    }
+                }
+            }
+            return tables;
+        }
+    }
+
+    /**
+     * Merges the tables of the shards [from, to) of all the chunks, one task per shard.
+     */
+    private static class MergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<PairCountTable[]> chunks;
+        private final PairCountTable[] shards;
+        private final int from, to;
+
+        MergeTask(List<PairCountTable[]> chunks, PairCountTable[] shards, int from, int to) {
+            this.chunks = chunks;
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MergeTask(chunks, shards, from, middle), new MergeTask(chunks, shards, middle, to));
+                return;
+            }
+            int expectedSize = 0;
+            for (PairCountTable[] chunk : chunks) {
+                expectedSize += chunk[from].size();
+            }
+            PairCountTable merged = new PairCountTable(expectedSize);
+            for (PairCountTable[] chunk : chunks) {
+                chunk[from].forEach(merged::add);
+                chunk[from] = null;
+            }
+            shards[from] = merged;
+        }
+    }
+
+    static int shard(long pair, int shardBits) {
+        return shardBits == 0 ? 0 : (int) ((pair * 0xC2B2AE3D27D4EB4FL) >>> (64 - shardBits));
+    }
+
+    static long numberOfPairs(IndexedMovie movie) {
+        long n = movie.numberOfActors();
+        return n * (n - 1) / 2;
+    }
+
+    static void countPairs(int[] actors, PairCountTable table) {
+        for (int i = 0; i < actors.length; i++) {
+            long first = (long) actors[i] << 32;
+            for (int j = i + 1; j < actors.length; j++) {
+                table.increment(first | actors[j]);
+            }
+        }
+    }
+
+    public long totalNumberOfPairs() {
+        return totalNumberOfPairs;
+    }
+
+    public int numberOfUniquePairs() {
+        int numberOfUniquePairs = 0;
+        for (PairCountTable shard : shards) {
+            numberOfUniquePairs += shard.size();
+        }
+        return numberOfUniquePairs;
+    }
+
+    /**
+     * The number of movies these two actors played together in.
+     */
+    public int count(int actor1, int actor2) {
+        long pair = actor1 < actor2 ?
+                PairCountTable.pair(actor1, actor2) :
+                PairCountTable.pair(actor2, actor1);
+        return shards[shard(pair, shardBits)].get(pair);
+    }
+
+    /**
+     * The pair that played together the most, decoded with PairCountTable.first() and second().
+     * The smallest pair wins ties, so that the result does not depend on the sharding.
+     */
+    public long maxPair() {
+        long maxPair = -1L;
+        int maxCount = 0;
+        for (PairCountTable shard : shards) {
+            int count = shard.maxCount();
+            long pair = shard.maxPair();
+            if (count > maxCount || count == maxCount && count > 0 && pair < maxPair) {
+                maxCount = count;
+                maxPair = pair;
+            }
+        }
+        return maxPair;
+    }
+
+    public int maxCount() {
+        int maxCount = 0;
+        for (PairCountTable shard : shards) {
+            maxCount = Math.max(maxCount, shard.maxCount());
+        }
+        return maxCount;
+    }
+
+    public int numberOfShards() {
+        return shards.length;
+    }
+
+    /**
+     * The table that holds the pairs of this shard.
+     */
+    public PairCountTable shard(int shard) {
+        return shards[shard];
+    }
+}
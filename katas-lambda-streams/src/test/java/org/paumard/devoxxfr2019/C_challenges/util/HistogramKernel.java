@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import static org.paumard.devoxxfr2019.C_challenges.util.WordScoreTable.NUMBER_OF_LETTERS;
+
+/**
+ * Batch computations of the letter histograms of the words of a WordArena, and of the scores
+ * derived from them.
+ * <p/>
+ * The histograms are stored in a single byte[], 26 bytes per word. Counting the letters is a
+ * scatter, that cannot be vectorized, but it is a single sequential pass over the arena. All the
+ * other kernels read each histogram once, in a loop of exactly 26 iterations over a contiguous
+ * range of bytes, with constant tables indexed by the loop counter and a single int reduction:
+ * the shape of loop that C2 unrolls and turns into SIMD instructions.
+ */
+public final class HistogramKernel {
+
+    private HistogramKernel() {
+    }
+
+    public static byte[] histograms(WordArena arena) {
+        byte[] letters = arena.letters();
+        int[] offsets = arena.offsets();
+        int numberOfWords = arena.size();
+        byte[] histograms = new byte[NUMBER_OF_LETTERS * numberOfWords];
+        for (int word = 0; word < numberOfWords; word++) {
+            int base = NUMBER_OF_LETTERS * word;
+            for (int i = offsets[word]; i < offsets[word + 1]; i++) {
+                histograms[base + letters[i]]++;
+            }
+        }
+        return histograms;
+    }
+
+    /**
+     * The scores of the words, as the dot products of their histograms with the letter scores.
+     */
+    public static int[] scores(byte[] histograms, int[] letterScores) {
+        checkTable(letterScores);
+        int[] scores = new int[histograms.length / NUMBER_OF_LETTERS];
+        for (int word = 0; word < scores.length; word++) {
+            int base = NUMBER_OF_LETTERS * word;
+            int score = 0;
+            for (int letter = 0; letter < NUMBER_OF_LETTERS; letter++) {
+                score += histograms[base + letter] * letterScores[letter];
+            }
+            scores[word] = score;
+        }
+        return scores;
+    }
+
+    /**
+     * The number of blanks each word needs, that is the sum of the counts of its letters
+     * that exceed the number of tiles of that letter.
+     */
+    public static int[] blanks(byte[] histograms, int[] letterDistribution) {
+        checkTable(letterDistribution);
+        int[] blanks = new int[histograms.length / NUMBER_OF_LETTERS];
+        for (int word = 0; word < blanks.length; word++) {
+            int base = NUMBER_OF_LETTERS * word;
+            int numberOfBlanks = 0;
+            for (int letter = 0; letter < NUMBER_OF_LETTERS; letter++) {
+                numberOfBlanks += Math.max(0, histograms[base + letter] - letterDistribution[letter]);
+            }
+            blanks[word] = numberOfBlanks;
+        }
+        return blanks;
+    }
+
+    /**
+     * The scores of the words when the letters that exceed the number of tiles are played
+     * with blanks, that score 0.
+     */
+    public static int[] scoresWithBlanks(byte[] histograms, int[] letterScores, int[] letterDistribution) {
+        checkTable(letterScores);
+        checkTable(letterDistribution);
+        int[] scores = new int[histograms.length / NUMBER_OF_LETTERS];
+        for (int word = 0; word < scores.length; word++) {
+            int base = NUMBER_OF_LETTERS * word;
+            int score = 0;
+            for (int letter = 0; letter < NUMBER_OF_LETTERS; letter++) {
+                score += Math.min(histograms[base + letter], letterDistribution[letter]) * letterScores[letter];
+            }
+            scores[word] = score;
+        }
+        return scores;
+    }
+
+    private static void checkTable(int[] table) {
+        if (table.length != NUMBER_OF_LETTERS) {
+            throw new IllegalArgumentException("A table should have " + NUMBER_OF_LETTERS + " values, not " + table.length);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A set of lower case words, stored as a minimal acyclic automaton: the words that share a suffix
+ * share the states of that suffix, as the words that share a prefix share the states of that prefix.
+ * <p/>
+ * The automaton is built from the sorted words with the incremental algorithm of Daciuk et al.,
+ * then flattened into arrays: the letters of the transitions of a state are the bits set in an int
+ * mask, and their target states are stored contiguously, sorted by letter, from firstTransitions[state].
+ * The target of a letter is found by counting the bits of the mask below that letter, so following
+ * a transition is O(1). The final states are the bits set in a long[]. Looking up a word reads its
+ * letters without hashing it, and does not create any object.
+ */
+public class Lexicon {
+
+    private static final int ROOT = 0;
+
+    private final int[] firstTransitions;
+    private final int[] letterMasks;
+    private final int[] targets;
+    private final long[] finals;
+    private final int size;
+
+    private Lexicon(int[] firstTransitions, int[] letterMasks, int[] targets, long[] finals, int size) {
+        this.firstTransitions = firstTransitions;
+        this.letterMasks = letterMasks;
+        this.targets = targets;
+        this.finals = finals;
+        this.size = size;
+    }
+
+    /**
+     * Reads the words of a gzipped file, one word per line, and turns them to lower case.
+     */
+    public static Lexicon load(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path);
+             GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(gzipInputStream, StandardCharsets.UTF_8))) {
+            return of(reader.lines().map(String::toLowerCase).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Builds the lexicon of these words, that must only have letters from a to z.
+     * Duplicates are ignored.
+     */
+    public static Lexicon of(Collection<String> words) {
+        String[] sortedWords = words.toArray(new String[0]);
+        Arrays.sort(sortedWords);
+        Builder builder = new Builder();
+        String previous = null;
+        for (String word : sortedWords) {
+            if (!word.equals(previous)) {
+                builder.add(word);
+                previous = word;
+            }
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int numberOfStates() {
+        return letterMasks.length;
+    }
+
+    public int numberOfTransitions() {
+        return targets.length;
+    }
+
+    public boolean contains(CharSequence word) {
+        int state = walk(word);
+        return state >= 0 && isFinal(state);
+    }
+
+    /**
+     * Calls the consumer with the words that start with this prefix, in the alphabetical order.
+     */
+    public void forEachWithPrefix(CharSequence prefix, Consumer<String> consumer) {
+        int state = walk(prefix);
+        if (state >= 0) {
+            StringBuilder word = new StringBuilder(prefix);
+            forEach(state, word, consumer);
+        }
+    }
+
+    public List<String> wordsWithPrefix(CharSequence prefix) {
+        List<String> words = new ArrayList<>();
+        forEachWithPrefix(prefix, words::add);
+        return words;
+    }
+
+    public List<String> words() {
+        return wordsWithPrefix("");
+    }
+
+    private void forEach(int state, StringBuilder word, Consumer<String> consumer) {
+        if (isFinal(state)) {
+            consumer.accept(word.toString());
+        }
+        int transition = firstTransitions[state];
+        for (int mask = letterMasks[state]; mask != 0; mask &= mask - 1) {
+            word.append((char) ('a' + Integer.numberOfTrailingZeros(mask)));
+            forEach(targets[transition++], word, consumer);
+            word.setLength(word.length() - 1);
+        }
+    }
+
+    /**
+     * Returns the state reached by reading these letters from the root, or -1 if there is none.
+     */
+    private int walk(CharSequence word) {
+        int state = ROOT;
+        for (int i = 0; i < word.length() && state >= 0; i++) {
+            state = next(state, word.charAt(i));
+        }
+        return state;
+    }
+
+    private int next(int state, char letter) {
+        int index = letter - 'a';
+        if (index < 0 || index > 'z' - 'a') {
+            return -1;
+        }
+        int mask = letterMasks[state];
+        int bit = 1 << index;
+        if ((mask & bit) == 0) {
+            return -1;
+        }
+        return targets[firstTransitions[state] + Integer.bitCount(mask & (bit - 1))];
+    }
+
+    private boolean isFinal(int state) {
+        return (finals[state >>> 6] & (1L << state)) != 0L;
+    }
+
+    /**
+     * A state of the automaton being built. Once registered, a state is never modified, and
+     * is unique for its set of transitions, so two registered states are equivalent if and
+     * only if they are the same object.
+     */
+    private static class State {
+
+        private boolean isFinal;
+        private byte[] letters = new byte[0];
+        private State[] targets = new State[0];
+
+        private State lastChild() {
+            return targets.length == 0 ? null : targets[targets.length - 1];
+        }
+
+        private void add(byte letter, State target) {
+            letters = Arrays.copyOf(letters, letters.length + 1);
+            targets = Arrays.copyOf(targets, targets.length + 1);
+            letters[letters.length - 1] = letter;
+            targets[targets.length - 1] = target;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            State other = (State) o;
+            if (isFinal != other.isFinal || !Arrays.equals(letters, other.letters)) {
+                return false;
+            }
+            for (int i = 0; i < targets.length; i++) {
+                if (targets[i] != other.targets[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hashCode = Boolean.hashCode(isFinal);
+            for (int i = 0; i < targets.length; i++) {
+                hashCode = 31 * (31 * hashCode + letters[i]) + System.identityHashCode(targets[i]);
+            }
+            return hashCode;
+        }
+    }
+
+    private static class Builder {
+
+        private final State root = new State();
+        private final Map<State, State> register = new HashMap<>();
+        private int size;
+
+        /**
+         * Adds a word, that must come after the previous one in the alphabetical order.
+         */
+        private void add(String word) {
+            State state = root;
+            int i = 0;
+            while (i < word.length() && state.targets.length > 0 &&
+                    state.letters[state.letters.length - 1] == word.charAt(i)) {
+                state = state.lastChild();
+                i++;
+            }
+            replaceOrRegister(state);
+            for (; i < word.length(); i++) {
+                char letter = word.charAt(i);
+                if (letter < 'a' || letter > 'z') {
+                    throw new IllegalArgumentException("Not a lower case word: " + word);
+                }
+                State next = new State();
+                state.add((byte) letter, next);
+                state = next;
+            }
+            state.isFinal = true;
+            size++;
+        }
+
+        /**
+         * Replaces the last child of this state, and recursively its own last child, by an
+         * equivalent registered state, or registers them if there is none.
+         */
+        private void replaceOrRegister(State state) {
+            State child = state.lastChild();
+            if (child == null || register.get(child) == child) {
+                return;
+            }
+            replaceOrRegister(child);
+            State registered = register.putIfAbsent(child, child);
+            if (registered != null) {
+                state.targets[state.targets.length - 1] = registered;
+            }
+        }
+
+        private Lexicon build() {
+            replaceOrRegister(root);
+
+            Map<State, Integer> ids = new IdentityHashMap<>();
+            List<State> states = new ArrayList<>();
+            Deque<State> queue = new ArrayDeque<>();
+            ids.put(root, 0);
+            states.add(root);
+            queue.add(root);
+            int numberOfTransitions = 0;
+            while (!queue.isEmpty()) {
+                State state = queue.poll();
+                numberOfTransitions += state.targets.length;
+                for (State target : state.targets) {
+                    if (!ids.containsKey(target)) {
+                        ids.put(target, states.size());
+                        states.add(target);
+                        queue.add(target);
+                    }
+                }
+            }
+
+            int[] firstTransitions = new int[states.size()];
+            int[] letterMasks = new int[states.size()];
+            int[] targets = new int[numberOfTransitions];
+            long[] finals = new long[(states.size() + 63) >>> 6];
+            int transition = 0;
+            for (int id = 0; id < states.size(); id++) {
+                State state = states.get(id);
+                firstTransitions[id] = transition;
+                if (state.isFinal) {
+                    finals[id >>> 6] |= 1L << id;
+                }
+                for (int i = 0; i < state.targets.length; i++) {
+                    letterMasks[id] |= 1 << (state.letters[i] - 'a');
+                    targets[transition] = ids.get(state.targets[i]);
+                    transition++;
+                }
+            }
+            return new Lexicon(firstTransitions, letterMasks, targets, finals, size);
+        }
+    }
+}
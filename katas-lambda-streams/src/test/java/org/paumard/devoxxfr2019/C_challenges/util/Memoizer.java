@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A function that remembers the results of another function, in a cache bounded in size.
+ * It can be used in parallel streams.
+ * <p/>
+ * The cache is split in segments, selected by the hash of the argument, each segment being a
+ * LinkedHashMap in access order guarded by its own lock, that evicts its least recently used entry
+ * when it is full. The eviction is thus LRU within a segment, and approximately LRU for the whole
+ * cache, and threads that read different segments do not contend.
+ * <p/>
+ * The wrapped function is called outside of the lock, so two threads that miss the same argument
+ * at the same time may both compute its result, which is fine for the pure functions this class
+ * is meant for. A null result is not cached.
+ */
+public class Memoizer<T, R> implements Function<T, R> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Function<? super T, ? extends R> function;
+    private final Segment<T, R>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    private Memoizer(Function<? super T, ? extends R> function, int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum size should be positive: " + maximumSize);
+        }
+        this.function = function;
+        int numberOfSegments = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maximumSize));
+        this.segments = (Segment<T, R>[]) new Segment<?, ?>[numberOfSegments];
+        for (int i = 0; i < numberOfSegments; i++) {
+            int segmentSize = maximumSize / numberOfSegments + (i < maximumSize % numberOfSegments ? 1 : 0);
+            segments[i] = new Segment<>(segmentSize);
+        }
+    }
+
+    /**
+     * Returns a function that caches the results of this function, for at most maximumSize arguments.
+     */
+    public static <T, R> Memoizer<T, R> of(Function<? super T, ? extends R> function, int maximumSize) {
+        return new Memoizer<>(function, maximumSize);
+    }
+
+    @Override
+    public R apply(T t) {
+        Segment<T, R> segment = segment(t);
+        R result = segment.get(t);
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+        result = function.apply(t);
+        if (result != null) {
+            segment.put(t, result);
+        }
+        return result;
+    }
+
+    private Segment<T, R> segment(T t) {
+        int hash = t == null ? 0 : t.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * The ratio of the calls that were answered from the cache, 0 if there were no calls.
+     */
+    public double hitRate() {
+        long hits = hits(), calls = hits + misses();
+        return calls == 0L ? 0d : (double) hits / calls;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<T, R> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Removes all the cached results, and resets the counters.
+     */
+    public void clear() {
+        for (Segment<T, R> segment : segments) {
+            segment.clear();
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * A LinkedHashMap in access order, that evicts its least recently used entry when it is full.
+     */
+    private static class Segment<T, R> {
+
+        private final int maximumSize;
+        private final Map<T, R> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        private Segment(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        private synchronized R get(T t) {
+            return map.get(t);
+        }
+
+        private synchronized void put(T t, R result) {
+            map.put(t, result);
+            if (map.size() > maximumSize) {
+                Iterator<T> eldest = map.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        private synchronized int size() {
+            return map.size();
+        }
+
+        private synchronized void clear() {
+            map.clear();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import org.paumard.devoxxfr2019.C_challenges.model.Actor;
+import org.paumard.devoxxfr2019.C_challenges.model.Movie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A parser of the gzipped movies-mpaa file that works on bytes, in parallel.
+ * <p/>
+ * The file is decompressed in the calling thread into byte arrays of about BATCH_SIZE bytes,
+ * cut on line boundaries. Each batch of lines is handed to an Executor that parses it directly
+ * from the bytes: the fields are located by scanning for '/' and ", ", and only the title
+ * and the names are decoded to Strings. The parsing rules are the ones of the original
+ * String.split() based parser: a movie whose year contains a coma is discarded, the names
+ * are trimmed, and a name without a coma has an empty first name. As in BufferedReader.lines(),
+ * a line ends with '\n', '\r' or "\r\n".
+ */
+public class MovieParser {
+
+    static final int BATCH_SIZE = 1 << 18;
+
+    private MovieParser() {
+    }
+
+    /**
+     * Parses the movies of this file, in the common fork/join pool. The movies are returned
+     * in the order of the file.
+     */
+    public static List<Movie> parse(Path source) throws IOException {
+        return parse(source, ForkJoinPool.commonPool());
+    }
+
+    public static List<Movie> parse(Path source, Executor executor) throws IOException {
+        List<CompletableFuture<List<Movie>>> batches = new ArrayList<>();
+        try (InputStream inputStream = Files.newInputStream(source);
+             GZIPInputStream gzis = new GZIPInputStream(inputStream, 1 << 16)) {
+
+            byte[] buffer = new byte[BATCH_SIZE];
+            int length = 0;
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                length += gzis.readNBytes(buffer, length, buffer.length - length);
+                endOfFile = length < buffer.length;
+                int end = endOfFile ? length : afterLastLine(buffer, length);
+                if (end == 0 && !endOfFile) {
+                    // this line is longer than the buffer
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    continue;
+                }
+                byte[] batch = buffer;
+                int batchEnd = end;
+                batches.add(CompletableFuture.supplyAsync(() -> parseLines(batch, 0, batchEnd), executor));
+
+                buffer = new byte[Math.max(BATCH_SIZE, length - end)];
+                System.arraycopy(batch, end, buffer, 0, length - end);
+                length = length - end;
+            }
+        }
+
+        try {
+            List<Movie> movies = new ArrayList<>();
+            for (CompletableFuture<List<Movie>> batch : batches) {
+                movies.addAll(batch.join());
+            }
+            return movies;
+        } catch (CompletionException e) {
+            throw new IOException("Could not parse " + source, e.getCause());
+        }
+    }
+
+    /**
+     * Parses the movies of this file, and returns them in a stream whose spliterator is SIZED
+     * and SUBSIZED, so that it splits evenly in parallel queries.
+     */
+    public static Stream<Movie> movies(Path source) {
+        try {
+            return Arrays.stream(parse(source).toArray(new Movie[0]));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The index that follows the last '\n' or '\r' of the buffer, 0 if there is none. If a "\r\n" is
+     * cut by this index, the next batch starts with an empty line, that is skipped.
+     */
+    private static int afterLastLine(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n' || buffer[i] == '\r') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    static List<Movie> parseLines(byte[] bytes, int from, int to) {
+        List<Movie> movies = new ArrayList<>();
+        int[] fields = new int[64];
+        int start = from;
+        while (start < to) {
+            int end = start;
+            while (end < to && bytes[end] != '\n' && bytes[end] != '\r') {
+                end++;
+            }
+            if (end > start) {
+                fields = parseLine(bytes, start, end, fields, movies);
+            }
+            start = end < to - 1 && bytes[end] == '\r' && bytes[end + 1] == '\n' ? end + 2 : end + 1;
+        }
+        return movies;
+    }
+
+    /**
+     * Parses one line, and adds its movie to movies. The boundaries of the '/' separated fields
+     * are stored in fields, that is grown and returned if the line has too many fields.
+     */
+    private static int[] parseLine(byte[] bytes, int from, int to, int[] fields, List<Movie> movies) {
+        int numberOfFields = 0;
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || bytes[i] == '/') {
+                if (2 * numberOfFields + 2 > fields.length) {
+                    fields = Arrays.copyOf(fields, 2 * fields.length);
+                }
+                fields[2 * numberOfFields] = start;
+                fields[2 * numberOfFields + 1] = i;
+                numberOfFields++;
+                start = i + 1;
+            }
+        }
+        // as in String.split(), the trailing empty fields are removed
+        while (numberOfFields > 1 && fields[2 * numberOfFields - 2] == fields[2 * numberOfFields - 1]) {
+            numberOfFields--;
+        }
+
+        int titleStart = fields[0], titleEnd = fields[1];
+        int open = lastIndexOf(bytes, titleStart, titleEnd, '(');
+        int close = lastIndexOf(bytes, titleStart, titleEnd, ')');
+        if (open < 0 || close < open) {
+            return fields;
+        }
+        if (lastIndexOf(bytes, open + 1, close, ',') >= 0) {
+            // Movies with a coma in their title are discarded
+            return fields;
+        }
+        String title = trimmed(bytes, titleStart, open);
+        int releaseYear = Integer.parseInt(new String(bytes, open + 1, close - open - 1, StandardCharsets.US_ASCII));
+        Movie movie = new Movie(title, releaseYear);
+
+        for (int field = 1; field < numberOfFields; field++) {
+            int nameStart = fields[2 * field], nameEnd = fields[2 * field + 1];
+            int separator = indexOfComaSpace(bytes, nameStart, nameEnd);
+            if (separator < 0) {
+                movie.addActor(new Actor(trimmed(bytes, nameStart, nameEnd), ""));
+            } else {
+                int firstNameEnd = indexOfComaSpace(bytes, separator + 2, nameEnd);
+                movie.addActor(new Actor(
+                        trimmed(bytes, nameStart, separator),
+                        trimmed(bytes, separator + 2, firstNameEnd < 0 ? nameEnd : firstNameEnd)));
+            }
+        }
+        movies.add(movie);
+        return fields;
+    }
+
+    private static int lastIndexOf(byte[] bytes, int from, int to, char c) {
+        for (int i = to - 1; i >= from; i--) {
+            if (bytes[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfComaSpace(byte[] bytes, int from, int to) {
+        for (int i = from; i < to - 1; i++) {
+            if (bytes[i] == ',' && bytes[i + 1] == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the bytes from UTF-8, removing the leading and trailing characters lower or
+     * equal to a space, as String.trim() does.
+     */
+    private static String trimmed(byte[] bytes, int from, int to) {
+        while (from < to && (bytes[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (bytes[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+}
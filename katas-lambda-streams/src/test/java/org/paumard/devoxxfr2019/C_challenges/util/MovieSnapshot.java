@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import org.paumard.devoxxfr2019.C_challenges.model.Actor;
+import org.paumard.devoxxfr2019.C_challenges.model.ActorRegistry;
+import org.paumard.devoxxfr2019.C_challenges.model.IndexedMovie;
+import org.paumard.devoxxfr2019.C_challenges.model.Movie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A binary, columnar snapshot of the movies-mpaa database.
+ * <p/>
+ * The snapshot is written once from the gzipped text file, and then memory mapped with
+ * FileChannel.map(). It is written to a temporary file of the same directory, that is moved
+ * over the snapshot once it has been forced to the disk, so that a crash or two JVMs converting
+ * at the same time never leave a truncated snapshot with a valid header. It holds an actor dictionary sorted by last name and first name, so that
+ * the id of an actor is its id in the ActorRegistry, and the following columns, indexed by movie:
+ * the release year, the title, and the sorted array of the ids of the actors of that movie.
+ * <p/>
+ * The layout is the following, all the ints are big endian:
+ * <pre>
+ * header     MAGIC, VERSION, source size (long), source last modified (long),
+ *            actor count, movie count, cast count, name bytes, title bytes
+ * ints       name offsets [actor count + 1]
+ *            release years [movie count]
+ *            cast offsets [movie count + 1]
+ *            cast ids [cast count]
+ *            title offsets [movie count + 1]
+ * bytes      names: UTF-8 last name, 0, UTF-8 first name, for each actor
+ *            titles: UTF-8 title, for each movie
+ * </pre>
+ */
+public class MovieSnapshot {
+
+    public static final Path MOVIES = Paths.get("files/movies/movies-mpaa.txt.gz");
+    public static final Path SNAPSHOT = Paths.get("target/movies-mpaa.snapshot");
+
+    private static final int MAGIC = 0x4d564e53; // MVNS
+    // to be incremented when the layout, or the way the movies are parsed, changes, so that a snapshot
+    // left in target by a previous version is converted again
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 5 * 4;
+
+    private final MappedByteBuffer buffer;
+    private final int actorCount;
+    private final int movieCount;
+    private final IntBuffer nameOffsets;
+    private final IntBuffer releaseYears;
+    private final IntBuffer castOffsets;
+    private final IntBuffer castIds;
+    private final IntBuffer titleOffsets;
+    private final ByteBuffer names;
+    private final ByteBuffer titles;
+
+    private MovieSnapshot(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a movie snapshot, or wrong version");
+        }
+        this.actorCount = buffer.getInt(24);
+        this.movieCount = buffer.getInt(28);
+        int castCount = buffer.getInt(32);
+        int nameBytes = buffer.getInt(36);
+        int titleBytes = buffer.getInt(40);
+
+        int position = HEADER_SIZE;
+        this.nameOffsets = ints(position, actorCount + 1);
+        position += 4 * (actorCount + 1);
+        this.releaseYears = ints(position, movieCount);
+        position += 4 * movieCount;
+        this.castOffsets = ints(position, movieCount + 1);
+        position += 4 * (movieCount + 1);
+        this.castIds = ints(position, castCount);
+        position += 4 * castCount;
+        this.titleOffsets = ints(position, movieCount + 1);
+        position += 4 * (movieCount + 1);
+        this.names = bytes(position, nameBytes);
+        position += nameBytes;
+        this.titles = bytes(position, titleBytes);
+    }
+
+    private IntBuffer ints(int position, int length) {
+        return buffer.duplicate().position(position).limit(position + 4 * length).slice().asIntBuffer();
+    }
+
+    private ByteBuffer bytes(int position, int length) {
+        return buffer.duplicate().position(position).limit(position + length).slice();
+    }
+
+    /**
+     * Maps an existing snapshot file in memory.
+     */
+    public static MovieSnapshot open(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            return new MovieSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Maps the snapshot of the given source file, converting the source first if the snapshot
+     * does not exist or has been written from another version of the source.
+     */
+    public static MovieSnapshot openOrConvert(Path source, Path snapshot) throws IOException {
+        if (!isUpToDate(source, snapshot)) {
+            convert(source, snapshot);
+        }
+        return open(snapshot);
+    }
+
+    /**
+     * Tells if the snapshot file exists and has been written from this version of the source file.
+     */
+    public static boolean isUpToDate(Path source, Path snapshot) throws IOException {
+        if (!Files.exists(snapshot) || Files.size(snapshot) < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0L);
+            return header.getInt(0) == MAGIC &&
+                    header.getInt(4) == VERSION &&
+                    header.getLong(8) == Files.size(source) &&
+                    header.getLong(16) == Files.getLastModifiedTime(source).toMillis();
+        }
+    }
+
+    /**
+     * Parses the gzipped source file and writes its snapshot. This is the only place where the
+     * text format is read, so that the parsing cost is paid once.
+     */
+    public static void convert(Path source, Path snapshot) throws IOException {
+        Set<Movie> movies = new HashSet<>(MovieParser.parse(source));
+        write(movies, snapshot, Files.size(source), Files.getLastModifiedTime(source).toMillis());
+    }
+
+    /**
+     * One-time converter: java MovieSnapshot [source] [snapshot], run from the katas-lambda-streams directory.
+     */
+    public static void main(String... args) throws IOException {
+        Path source = args.length > 0 ? Paths.get(args[0]) : MOVIES;
+        Path snapshot = args.length > 1 ? Paths.get(args[1]) : SNAPSHOT;
+        convert(source, snapshot);
+        System.out.println(open(snapshot) + " written to " + snapshot);
+    }
+
+    static void write(Set<Movie> movies, Path snapshot, long sourceSize, long sourceLastModified) throws IOException {
+
+        ActorRegistry registry = ActorRegistry.of(movies);
+
+        List<byte[]> names = new ArrayList<>(registry.size());
+        int nameBytes = 0;
+        for (int id = 0; id < registry.size(); id++) {
+            Actor actor = registry.actor(id);
+            byte[] name = (actor.lastName() + '\0' + actor.firstName()).getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            nameBytes += name.length;
+        }
+
+        List<byte[]> titles = new ArrayList<>(movies.size());
+        List<int[]> casts = new ArrayList<>(movies.size());
+        int[] releaseYears = new int[movies.size()];
+        int titleBytes = 0;
+        int castCount = 0;
+        for (Movie movie : movies) {
+            byte[] title = movie.title().getBytes(StandardCharsets.UTF_8);
+            int[] cast = registry.index(movie).actors();
+            releaseYears[titles.size()] = movie.releaseYear();
+            titles.add(title);
+            casts.add(cast);
+            titleBytes += title.length;
+            castCount += cast.length;
+        }
+
+        long size = HEADER_SIZE +
+                4L * (registry.size() + 1) +
+                4L * movies.size() +
+                4L * (movies.size() + 1) +
+                4L * castCount +
+                4L * (movies.size() + 1) +
+                nameBytes + titleBytes;
+
+        Path directory = snapshot.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(VERSION)
+                        .putLong(sourceSize).putLong(sourceLastModified)
+                        .putInt(registry.size()).putInt(movies.size()).putInt(castCount)
+                        .putInt(nameBytes).putInt(titleBytes);
+
+                int offset = 0;
+                buffer.putInt(offset);
+                for (byte[] name : names) {
+                    offset += name.length;
+                    buffer.putInt(offset);
+                }
+                for (int releaseYear : releaseYears) {
+                    buffer.putInt(releaseYear);
+                }
+                offset = 0;
+                buffer.putInt(offset);
+                for (int[] cast : casts) {
+                    offset += cast.length;
+                    buffer.putInt(offset);
+                }
+                for (int[] cast : casts) {
+                    for (int id : cast) {
+                        buffer.putInt(id);
+                    }
+                }
+                offset = 0;
+                buffer.putInt(offset);
+                for (byte[] title : titles) {
+                    offset += title.length;
+                    buffer.putInt(offset);
+                }
+                names.forEach(buffer::put);
+                titles.forEach(buffer::put);
+                buffer.force();
+                channel.force(true);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public int numberOfActors() {
+        return actorCount;
+    }
+
+    public int numberOfMovies() {
+        return movieCount;
+    }
+
+    public String lastName(int actorId) {
+        String name = name(actorId);
+        return name.substring(0, name.indexOf('\0'));
+    }
+
+    public String firstName(int actorId) {
+        String name = name(actorId);
+        return name.substring(name.indexOf('\0') + 1);
+    }
+
+    private String name(int actorId) {
+        return utf8(names, nameOffsets.get(actorId), nameOffsets.get(actorId + 1));
+    }
+
+    public String title(int movieId) {
+        return utf8(titles, titleOffsets.get(movieId), titleOffsets.get(movieId + 1));
+    }
+
+    public int releaseYear(int movieId) {
+        return releaseYears.get(movieId);
+    }
+
+    /**
+     * Returns a copy of the sorted ids of the actors of the given movie.
+     */
+    public int[] cast(int movieId) {
+        int from = castOffsets.get(movieId);
+        int[] cast = new int[castOffsets.get(movieId + 1) - from];
+        castIds.duplicate().position(from).get(cast);
+        return cast;
+    }
+
+    public int castSize(int movieId) {
+        return castOffsets.get(movieId + 1) - castOffsets.get(movieId);
+    }
+
+    private static String utf8(ByteBuffer bytes, int from, int to) {
+        byte[] array = new byte[to - from];
+        bytes.duplicate().position(from).get(array);
+        return new String(array, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the actor dictionary. Since it is written sorted, the ids of the registry are
+     * the ids of the snapshot.
+     */
+    public ActorRegistry registry() {
+        Actor[] actors = new Actor[actorCount];
+        for (int id = 0; id < actorCount; id++) {
+            String name = name(id);
+            int separator = name.indexOf('\0');
+            actors[id] = new Actor(name.substring(0, separator), name.substring(separator + 1));
+        }
+        return ActorRegistry.ofSorted(actors);
+    }
+
+    /**
+     * Reads the movies with their casts as arrays of actor ids. The index of a movie in
+     * the returned list is its id in the snapshot.
+     */
+    public List<IndexedMovie> indexedMovies() {
+        List<IndexedMovie> movies = new ArrayList<>(movieCount);
+        for (int movieId = 0; movieId < movieCount; movieId++) {
+            movies.add(new IndexedMovie(title(movieId), releaseYear(movieId), cast(movieId)));
+        }
+        return movies;
+    }
+
+    /**
+     * Rebuilds the Movie and Actor objects of the snapshot. Each actor is created once,
+     * and shared between all the movies it played in.
+     */
+    public Set<Movie> movies() {
+        ActorRegistry registry = registry();
+        return indexedMovies().stream().map(registry::movie).collect(Collectors.toSet());
+    }
+
+    @Override
+    public String toString() {
+        return "MovieSnapshot{" + "actors=" + actorCount + ", movies=" + movieCount +
+                ", cast=" + castIds.limit() + '}';
+    }
+}
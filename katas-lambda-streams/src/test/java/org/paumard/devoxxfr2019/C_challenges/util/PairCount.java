@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.util.Comparator;
+
+/**
+ * A pair of actor ids, with the number of movies they played together in.
+ */
+public class PairCount {
+
+    /**
+     * The greatest count first, then the smallest pair.
+     */
+    public static final Comparator<PairCount> BEST_FIRST =
+            Comparator.comparingInt(PairCount::count).reversed().thenComparingLong(PairCount::pair);
+
+    private final long pair;
+    private final int count;
+
+    public PairCount(long pair, int count) {
+        this.pair = pair;
+        this.count = count;
+    }
+
+    public long pair() {
+        return pair;
+    }
+
+    public int first() {
+        return PairCountTable.first(pair);
+    }
+
+    public int second() {
+        return PairCountTable.second(pair);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PairCount other = (PairCount) o;
+        return pair == other.pair && count == other.count;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(pair) + count;
+    }
+
+    @Override
+    public String toString() {
+        return "PairCount{" + "first=" + first() + ", second=" + second() + ", count=" + count + '}';
+    }
+}
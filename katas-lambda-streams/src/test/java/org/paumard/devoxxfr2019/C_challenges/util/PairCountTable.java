@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An open addressing hash table that counts pairs of actor ids. A pair is encoded in a single
+ * long, the first id in the high 32 bits, the second one in the low 32 bits, so counting a pair
+ * does not allocate anything.
+ * <p/>
+ * The keys and the counts are held in two parallel arrays, collisions are resolved by linear
+ * probing, and the table doubles its capacity when it is 3/4 full, up to 2^30 slots.
+ * This class is not thread safe.
+ */
+public class PairCountTable {
+
+    @FunctionalInterface
+    public interface PairConsumer {
+
+        void accept(long pair, int count);
+    }
+
+    private static final long EMPTY = -1L;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private int[] counts;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    public PairCountTable() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a table that can hold this number of pairs without resizing.
+     */
+    public PairCountTable(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long capacity = Long.highestOneBit(Math.max(MIN_CAPACITY, 4L * expectedSize / 3 + 1) - 1) << 1;
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Too many pairs: " + expectedSize);
+        }
+        return (int) capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        counts = new int[capacity];
+        mask = capacity - 1;
+        threshold = capacity / 4 * 3;
+        size = 0;
+    }
+
+    public static long pair(int actor1, int actor2) {
+        return ((long) actor1 << 32) | (actor2 & 0xFFFFFFFFL);
+    }
+
+    public static int first(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    public static int second(long pair) {
+        return (int) pair;
+    }
+
+    private int slot(long pair) {
+        long hash = pair * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Adds one to the count of this pair, and returns the new count.
+     */
+    public int increment(long pair) {
+        return add(pair, 1);
+    }
+
+    /**
+     * Adds delta to the count of this pair, and returns the new count. The pair -1, that is the pair
+     * of the actors -1 and -1, marks the empty slots, and cannot be added.
+     */
+    public int add(long pair, int delta) {
+        if (pair == EMPTY) {
+            throw new IllegalArgumentException("The pair " + pair + " marks the empty slots");
+        }
+        int slot = slot(pair);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == pair) {
+                return counts[slot] += delta;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = pair;
+        counts[slot] = delta;
+        if (++size > threshold) {
+            rehash();
+        }
+        return delta;
+    }
+
+    /**
+     * Returns the count of this pair, 0 if it has never been added.
+     */
+    public int get(long pair) {
+        int slot = slot(pair);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == pair) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    private void rehash() {
+        if (keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Too many pairs: " + size);
+        }
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        allocate(2 * oldKeys.length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                add(oldKeys[i], oldCounts[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes all the pairs, keeping the current capacity, so that the table can be reused.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public void forEach(PairConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of the pair with the greatest count, the smallest pair winning ties,
+     * or -1 if this table is empty.
+     */
+    private int maxSlot() {
+        int maxSlot = -1;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY &&
+                    (maxSlot == -1 || counts[i] > counts[maxSlot] ||
+                            counts[i] == counts[maxSlot] && keys[i] < keys[maxSlot])) {
+                maxSlot = i;
+            }
+        }
+        return maxSlot;
+    }
+
+    /**
+     * Returns the pair with the greatest count, the smallest pair winning ties, or -1 if this table is empty.
+     */
+    public long maxPair() {
+        int maxSlot = maxSlot();
+        return maxSlot == -1 ? EMPTY : keys[maxSlot];
+    }
+
+    /**
+     * Returns the greatest count of this table, 0 if this table is empty.
+     */
+    public int maxCount() {
+        int maxSlot = maxSlot();
+        return maxSlot == -1 ? 0 : counts[maxSlot];
+    }
+
+    /**
+     * Returns the k pairs with the greatest counts, sorted with PairCount.BEST_FIRST.
+     * <p/>
+     * The table is scanned once, with a bounded min-heap of k slots, the root of the heap
+     * being the worst pair kept so far. Only the k returned objects are created.
+     */
+    public List<PairCount> top(int k) {
+        checkK(k);
+        int[] heap = new int[Math.min(k, size)];
+        int heapSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == EMPTY) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = i;
+                siftUp(heap, heapSize++);
+            } else if (heapSize > 0 && isBetter(i, heap[0])) {
+                heap[0] = i;
+                siftDown(heap, heapSize);
+            }
+        }
+        List<PairCount> top = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            top.add(new PairCount(keys[heap[i]], counts[heap[i]]));
+        }
+        top.sort(PairCount.BEST_FIRST);
+        return top;
+    }
+
+    static void checkK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k should be positive: " + k);
+        }
+    }
+
+    private boolean isBetter(int slot1, int slot2) {
+        return counts[slot1] > counts[slot2] ||
+                counts[slot1] == counts[slot2] && keys[slot1] < keys[slot2];
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBetter(heap[parent], heap[index])) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        while (2 * index + 1 < heapSize) {
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && isBetter(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!isBetter(heap[index], heap[child])) {
+                return;
+            }
+            swap(heap, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int slot = heap[i];
+        heap[i] = heap[j];
+        heap[j] = slot;
+    }
+}
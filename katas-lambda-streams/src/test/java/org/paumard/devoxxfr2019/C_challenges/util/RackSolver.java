@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the best words that can be played from a rack of tiles, a blank tile being written '?'.
+ * <p/>
+ * A word can be played if it has at most as many letters as the rack, and if its letters that
+ * are not in the rack can be replaced by the blanks. Its score is the sum of the scores of the
+ * letters played with a tile, a blank scoring 0, plus the bingo bonus if all the tiles of the rack are
+ * played. The size of the rack and the bonus are the ones of the ScoringRules of the table.
+ * <p/>
+ * For each word, the solver precomputes the set of its letters as a 26 bit mask, and an upper
+ * bound of its score, that is its score without blanks plus the bingo bonus. The words are sorted
+ * by decreasing bound, so that the scan stops as soon as no remaining word can enter the top N.
+ * A word is only checked against the histogram of the rack if its number of letters absent from
+ * the rack is at most the number of blanks.
+ */
+public class RackSolver {
+
+    public static final char BLANK = '?';
+
+    private final WordScoreTable table;
+    private final int rackSize;
+    private final int bingo;
+    private final int[] wordsByBound;
+    private final int[] bounds;
+    private final int[] letterMasks;
+    private final int[] lengths;
+
+    private RackSolver(WordScoreTable table) {
+        this.table = table;
+        this.rackSize = table.rules().rackSize();
+        this.bingo = table.rules().bingo();
+        this.lengths = table.wordIds().map(word -> table.word(word).length()).toArray();
+        this.letterMasks = table.wordIds().map(this::letterMask).toArray();
+        int[] bounds = table.wordIds().map(word -> table.score(word) + (lengths[word] == rackSize ? bingo : 0)).toArray();
+        this.wordsByBound =
+                table.wordIds()
+                        .filter(word -> lengths[word] <= rackSize)
+                        .boxed()
+                        .sorted((word1, word2) -> Integer.compare(bounds[word2], bounds[word1]))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+        this.bounds = IntStream.of(wordsByBound).map(word -> bounds[word]).toArray();
+    }
+
+    /**
+     * Builds a solver for the words of this table that have at most as many letters as the rack.
+     */
+    public static RackSolver of(WordScoreTable table) {
+        return new RackSolver(table);
+    }
+
+    private int letterMask(int word) {
+        int mask = 0;
+        for (char letter = 'a'; letter <= 'z'; letter++) {
+            if (table.count(word, letter) > 0) {
+                mask |= 1 << (letter - 'a');
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the n best words that can be played from this rack, sorted with WordScore.BEST_FIRST.
+     *
+     * @param rack at most rackSize tiles, each being a lower case letter or a BLANK
+     */
+    public List<WordScore> bestWords(CharSequence rack, int n) {
+        if (n <= 0) {
+            return List.of();
+        }
+        if (rack.length() > rackSize) {
+            throw new IllegalArgumentException("A rack has at most " + rackSize + " tiles: " + rack);
+        }
+        int[] tiles = new int[WordScoreTable.NUMBER_OF_LETTERS];
+        int rackMask = 0;
+        int blanks = 0;
+        for (int i = 0; i < rack.length(); i++) {
+            char tile = rack.charAt(i);
+            if (tile == BLANK) {
+                blanks++;
+            } else if (tile >= 'a' && tile <= 'z') {
+                tiles[tile - 'a']++;
+                rackMask |= 1 << (tile - 'a');
+            } else {
+                throw new IllegalArgumentException("Not a tile: " + tile + " in " + rack);
+            }
+        }
+
+        PriorityQueue<WordScore> best = new PriorityQueue<>(WordScore.BEST_FIRST.reversed());
+        for (int i = 0; i < wordsByBound.length; i++) {
+            if (best.size() == n && bounds[i] < best.peek().score()) {
+                break;
+            }
+            int word = wordsByBound[i];
+            if (lengths[word] > rack.length() ||
+                    Integer.bitCount(letterMasks[word] & ~rackMask) > blanks) {
+                continue;
+            }
+            int score = score(word, tiles, blanks);
+            if (score < 0) {
+                continue;
+            }
+            WordScore wordScore = new WordScore(table.word(word), score);
+            if (best.size() < n) {
+                best.add(wordScore);
+            } else if (WordScore.BEST_FIRST.compare(wordScore, best.peek()) < 0) {
+                best.poll();
+                best.add(wordScore);
+            }
+        }
+        List<WordScore> bestWords = new ArrayList<>(best);
+        bestWords.sort(WordScore.BEST_FIRST);
+        return bestWords;
+    }
+
+    /**
+     * The score of this word played from these tiles, or -1 if there are not enough blanks.
+     */
+    private int score(int word, int[] tiles, int blanks) {
+        int score = 0;
+        for (int mask = letterMasks[word]; mask != 0; mask &= mask - 1) {
+            int letter = Integer.numberOfTrailingZeros(mask);
+            int count = table.count(word, (char) ('a' + letter));
+            if (count > tiles[letter]) {
+                blanks -= count - tiles[letter];
+                if (blanks < 0) {
+                    return -1;
+                }
+                count = tiles[letter];
+            }
+            score += count * table.letterScore((char) ('a' + letter));
+        }
+        return score + (lengths[word] == rackSize ? bingo : 0);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.paumard.devoxxfr2019.C_challenges.util.WordScoreTable.NUMBER_OF_LETTERS;
+
+/**
+ * The rules of a Scrabble like game: the score and the number of tiles of each letter from a to z,
+ * the size of the rack, the bonus for playing all the tiles of the rack, and the line of the board
+ * the first move is played on.
+ * <p/>
+ * The first move line is a list of squares separated by spaces: . for a plain square, DL and TL
+ * for double and triple letter squares, DW and TW for double and triple word squares, and C for
+ * the center square, a double word square that the first move must cover. It is compiled, for each
+ * length of word up to the size of the rack, into the list of the placements that cover the center
+ * square, each placement being the letter multipliers of the letters of the word and a word
+ * multiplier. Scoring a first move then only reads these arrays.
+ * <p/>
+ * The rules can be read from a properties file, see files/scrabble/english.properties.
+ */
+public class ScoringRules {
+
+    /**
+     * The first move line of the english Scrabble.
+     */
+    public static final String SCRABBLE_FIRST_MOVE_LINE = "TW . . DL . . . C . . . DL . . TW";
+    public static final int SCRABBLE_RACK_SIZE = 7;
+    public static final int SCRABBLE_BINGO = 50;
+
+    private final String name;
+    private final int[] letterScores;
+    private final int[] letterDistribution;
+    private final int rackSize;
+    private final int bingo;
+
+    /**
+     * For the words of length n, the word multipliers of the placements are in wordMultipliers[n],
+     * and the letter multipliers of placement p are letterMultipliers[n][p * n] to letterMultipliers[n][(p + 1) * n].
+     */
+    private final int[][] wordMultipliers;
+    private final int[][] letterMultipliers;
+
+    private ScoringRules(String name, int[] letterScores, int[] letterDistribution, int rackSize, int bingo, String firstMoveLine) {
+        if (letterScores.length != NUMBER_OF_LETTERS || letterDistribution.length != NUMBER_OF_LETTERS) {
+            throw new IllegalArgumentException("The rules " + name + " should have a score and a distribution for " + NUMBER_OF_LETTERS + " letters");
+        }
+        this.name = name;
+        this.letterScores = letterScores.clone();
+        this.letterDistribution = letterDistribution.clone();
+        this.rackSize = rackSize;
+        this.bingo = bingo;
+        this.wordMultipliers = new int[rackSize + 1][];
+        this.letterMultipliers = new int[rackSize + 1][];
+        compile(firstMoveLine.trim().split("\\s+"));
+    }
+
+    public static ScoringRules of(String name, int[] letterScores, int[] letterDistribution,
+                                  int rackSize, int bingo, String firstMoveLine) {
+        return new ScoringRules(name, letterScores, letterDistribution, rackSize, bingo, firstMoveLine);
+    }
+
+    /**
+     * The english Scrabble board and rack, with these scores and distribution.
+     */
+    public static ScoringRules scrabble(int[] letterScores, int[] letterDistribution) {
+        return of("Scrabble", letterScores, letterDistribution, SCRABBLE_RACK_SIZE, SCRABBLE_BINGO, SCRABBLE_FIRST_MOVE_LINE);
+    }
+
+    /**
+     * Reads the rules from a properties file, with the keys name, scores, distribution, rackSize,
+     * bingo and firstMoveLine. The scores and the distribution are lists of 26 integers separated by comas.
+     */
+    public static ScoringRules load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return of(
+                properties.getProperty("name", path.getFileName().toString()),
+                integers(properties, "scores", path),
+                integers(properties, "distribution", path),
+                integers(properties, "rackSize", path)[0],
+                integers(properties, "bingo", path)[0],
+                property(properties, "firstMoveLine", path));
+    }
+
+    private static String property(Properties properties, String key, Path path) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + key + " in " + path);
+        }
+        return value;
+    }
+
+    private static int[] integers(Properties properties, String key, Path path) {
+        try {
+            return Arrays.stream(property(properties, key, path).split(","))
+                    .map(String::trim)
+                    .mapToInt(Integer::parseInt)
+                    .toArray();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + " in " + path, e);
+        }
+    }
+
+    private void compile(String[] squares) {
+        int center = Arrays.asList(squares).indexOf("C");
+        if (center < 0) {
+            throw new IllegalArgumentException("The first move line of " + name + " has no center square");
+        }
+        for (int length = 1; length <= rackSize; length++) {
+            int firstStart = Math.max(0, center - length + 1);
+            int lastStart = Math.min(center, squares.length - length);
+            int numberOfPlacements = Math.max(0, lastStart - firstStart + 1);
+            wordMultipliers[length] = new int[numberOfPlacements];
+            letterMultipliers[length] = new int[numberOfPlacements * length];
+            for (int placement = 0; placement < numberOfPlacements; placement++) {
+                int wordMultiplier = 1;
+                for (int i = 0; i < length; i++) {
+                    String square = squares[firstStart + placement + i];
+                    int letterMultiplier = 1;
+                    switch (square) {
+                        case ".": break;
+                        case "DL": letterMultiplier = 2; break;
+                        case "TL": letterMultiplier = 3; break;
+                        case "C":
+                        case "DW": wordMultiplier *= 2; break;
+                        case "TW": wordMultiplier *= 3; break;
+                        default:
+                            throw new IllegalArgumentException("Unknown square " + square + " in the first move line of " + name);
+                    }
+                    letterMultipliers[length][placement * length + i] = letterMultiplier;
+                }
+                wordMultipliers[length][placement] = wordMultiplier;
+            }
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int[] letterScores() {
+        return letterScores.clone();
+    }
+
+    public int[] letterDistribution() {
+        return letterDistribution.clone();
+    }
+
+    public int letterScore(char letter) {
+        return letterScores[letter - 'a'];
+    }
+
+    public int rackSize() {
+        return rackSize;
+    }
+
+    public int bingo() {
+        return bingo;
+    }
+
+    /**
+     * The best score of this word played as the first move, given its score with blanks, or -1 if
+     * it has more letters than the rack. As in the shakespeare10 solution, a letter multiplier
+     * applies to the score of the letter, even if it is played with a blank.
+     */
+    public int firstMoveScore(CharSequence word, int scoreWithBlanks) {
+        int length = word.length();
+        if (length == 0 || length > rackSize) {
+            return -1;
+        }
+        int[] wordMultipliers = this.wordMultipliers[length];
+        int[] letterMultipliers = this.letterMultipliers[length];
+        int best = -1;
+        for (int placement = 0; placement < wordMultipliers.length; placement++) {
+            int score = scoreWithBlanks;
+            for (int i = 0; i < length; i++) {
+                score += (letterMultipliers[placement * length + i] - 1) * letterScores[word.charAt(i) - 'a'];
+            }
+            best = Math.max(best, score * wordMultipliers[placement]);
+        }
+        return best < 0 ? -1 : best + (length == rackSize ? bingo : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "ScoringRules{" + "name=" + name + ", rackSize=" + rackSize + ", bingo=" + bingo + '}';
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+
+/**
+ * The elements of a stream that have the k greatest scores, with all the elements that share
+ * one of these scores. It is the result of groupingBy(score), limited to its k greatest keys,
+ * without building the map of all the scores.
+ * <p/>
+ * Each thread of a parallel stream accumulates in its own TopScores, that never holds more
+ * than k scores: they are kept in an int array, from the greatest to the lowest, next to the
+ * elements of each score. An element whose score is lower than the k-th score is discarded
+ * without creating any object, and an element whose score is already kept is added to the
+ * elements of its score. The map is only built by the finisher. The combiner merges two TopScores
+ * and keeps the k best scores of both. The elements that share a score are kept in the encounter order.
+ */
+public class TopScores<T> {
+
+    private final ToIntFunction<? super T> score;
+    private final int k;
+    private final int[] scores;
+    private final List<List<T>> elements;
+    private int size;
+
+    private TopScores(ToIntFunction<? super T> score, int k) {
+        this.score = score;
+        this.k = k;
+        this.scores = new int[k];
+        this.elements = new ArrayList<>(k);
+    }
+
+    /**
+     * Returns a collector of the elements that have the k greatest scores, in a map sorted
+     * from the greatest score to the lowest.
+     */
+    public static <T> Collector<T, ?, SortedMap<Integer, List<T>>> collector(ToIntFunction<? super T> score, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k should be positive: " + k);
+        }
+        return Collector.of(
+                () -> new TopScores<T>(score, k),
+                TopScores::accept,
+                TopScores::combine,
+                TopScores::finish);
+    }
+
+    private void accept(T element) {
+        int score = this.score.applyAsInt(element);
+        if (size == k && score < scores[k - 1]) {
+            return;
+        }
+        int index = indexOf(score);
+        if (index < size && scores[index] == score) {
+            elements.get(index).add(element);
+        } else {
+            List<T> list = new ArrayList<>();
+            list.add(element);
+            insert(index, score, list);
+        }
+    }
+
+    /**
+     * The index of this score in the scores sorted from the greatest to the lowest,
+     * or the index where it should be inserted.
+     */
+    private int indexOf(int score) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (scores[middle] > score) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void insert(int index, int score, List<T> list) {
+        if (size == k) {
+            elements.remove(--size);
+        }
+        System.arraycopy(scores, index, scores, index + 1, size - index);
+        scores[index] = score;
+        elements.add(index, list);
+        size++;
+    }
+
+    private TopScores<T> combine(TopScores<T> other) {
+        for (int i = 0; i < other.size; i++) {
+            int score = other.scores[i];
+            if (size == k && score < scores[k - 1]) {
+                break;
+            }
+            int index = indexOf(score);
+            if (index < size && scores[index] == score) {
+                elements.get(index).addAll(other.elements.get(i));
+            } else {
+                insert(index, score, other.elements.get(i));
+            }
+        }
+        return this;
+    }
+
+    private SortedMap<Integer, List<T>> finish() {
+        SortedMap<Integer, List<T>> elementsByScore = new TreeMap<>(Comparator.reverseOrder());
+        for (int i = 0; i < size; i++) {
+            elementsByScore.put(scores[i], elements.get(i));
+        }
+        return elementsByScore;
+    }
+}
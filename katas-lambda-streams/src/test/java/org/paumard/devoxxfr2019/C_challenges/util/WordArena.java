@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+/**
+ * Words packed contiguously in a single byte[], each letter stored as its index from 0 for 'a'
+ * to 25 for 'z'. The letters of a word go from offsets[word] to offsets[word + 1].
+ * <p/>
+ * This is the input of HistogramKernel: scanning an arena reads a single array sequentially,
+ * where scanning a String[] follows a reference and checks the coder of each String.
+ */
+public class WordArena {
+
+    private final byte[] letters;
+    private final int[] offsets;
+
+    private WordArena(byte[] letters, int[] offsets) {
+        this.letters = letters;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Packs these words, that must only have lower case letters from a to z, in this order.
+     */
+    public static WordArena of(String... words) {
+        int[] offsets = new int[words.length + 1];
+        for (int word = 0; word < words.length; word++) {
+            offsets[word + 1] = offsets[word] + words[word].length();
+        }
+        byte[] letters = new byte[offsets[words.length]];
+        for (int word = 0; word < words.length; word++) {
+            String chars = words[word];
+            for (int i = 0; i < chars.length(); i++) {
+                int letter = chars.charAt(i) - 'a';
+                if (letter < 0 || letter >= WordScoreTable.NUMBER_OF_LETTERS) {
+                    throw new IllegalArgumentException("Not a lower case word: " + chars);
+                }
+                letters[offsets[word] + i] = (byte) letter;
+            }
+        }
+        return new WordArena(letters, offsets);
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public int length(int word) {
+        return offsets[word + 1] - offsets[word];
+    }
+
+    public String word(int word) {
+        char[] chars = new char[length(word)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + letters[offsets[word] + i]);
+        }
+        return new String(chars);
+    }
+
+    byte[] letters() {
+        return letters;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.util.Comparator;
+
+/**
+ * A word, with the score it can make.
+ */
+public class WordScore {
+
+    /**
+     * The greatest score first, then the word first in the alphabetical order.
+     */
+    public static final Comparator<WordScore> BEST_FIRST =
+            Comparator.comparingInt(WordScore::score).reversed().thenComparing(WordScore::word);
+
+    private final String word;
+    private final int score;
+
+    public WordScore(String word, int score) {
+        this.word = word;
+        this.score = score;
+    }
+
+    public String word() {
+        return word;
+    }
+
+    public int score() {
+        return score;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WordScore other = (WordScore) o;
+        return score == other.score && word.equals(other.word);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * word.hashCode() + score;
+    }
+
+    @Override
+    public String toString() {
+        return "WordScore{" + "word=" + word + ", score=" + score + '}';
+    }
+}
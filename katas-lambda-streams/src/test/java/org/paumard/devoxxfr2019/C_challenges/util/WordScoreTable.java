@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+/**
+ * The Scrabble scores of a dictionary, computed once per word, so that the queries on the
+ * dictionary are scans of primitive arrays, that do not create any object.
+ * <p/>
+ * The words are sorted in the alphabetical order, and identified by their index in that order.
+ * For each word the table holds the histogram of its letters, 26 bytes per word in a single byte[],
+ * its score, the number of blanks needed to write it with the letters of the game, its score when
+ * these blanks are played, and the score of the first move on the central line, computed with
+ * the ScoringRules of the table, -1 for a word longer than the rack.
+ */
+public class WordScoreTable {
+
+    public static final int NUMBER_OF_LETTERS = 26;
+
+    private final ScoringRules rules;
+    private final int[] letterScores;
+    private final String[] words;
+    private final byte[] histograms;
+    private final int[] scores;
+    private final int[] blanks;
+    private final int[] scoresWithBlanks;
+    private final int[] firstMoveScores;
+
+    private WordScoreTable(ScoringRules rules, String[] words) {
+        this.rules = rules;
+        this.letterScores = rules.letterScores();
+        this.words = words;
+        int[] letterDistribution = rules.letterDistribution();
+        this.histograms = HistogramKernel.histograms(WordArena.of(words));
+        this.scores = HistogramKernel.scores(histograms, letterScores);
+        this.blanks = HistogramKernel.blanks(histograms, letterDistribution);
+        this.scoresWithBlanks = HistogramKernel.scoresWithBlanks(histograms, letterScores, letterDistribution);
+        this.firstMoveScores = new int[words.length];
+        for (int word = 0; word < words.length; word++) {
+            firstMoveScores[word] = rules.firstMoveScore(words[word], scoresWithBlanks[word]);
+        }
+    }
+
+    /**
+     * Builds the table of these words with the rules of the english Scrabble board,
+     * and these letter scores and distribution.
+     *
+     * @param letterScores       the score of each letter, from a to z
+     * @param letterDistribution the number of tiles of each letter in the game, from a to z
+     */
+    public static WordScoreTable of(Collection<String> words, int[] letterScores, int[] letterDistribution) {
+        return of(words, ScoringRules.scrabble(letterScores, letterDistribution));
+    }
+
+    /**
+     * Builds the table of these words, that must only have lower case letters from a to z.
+     * The histograms and the scores are computed in batch by HistogramKernel, and the first move
+     * scores by the rules.
+     */
+    public static WordScoreTable of(Collection<String> words, ScoringRules rules) {
+        String[] sortedWords = words.toArray(new String[0]);
+        Arrays.sort(sortedWords);
+        return new WordScoreTable(rules, sortedWords);
+    }
+
+    public ScoringRules rules() {
+        return rules;
+    }
+
+    public int letterScore(char letter) {
+        return letterScores[letter - 'a'];
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * The ids of the words, that is 0 to size() - 1, in the alphabetical order of the words.
+     */
+    public IntStream wordIds() {
+        return IntStream.range(0, words.length);
+    }
+
+    public String word(int word) {
+        return words[word];
+    }
+
+    /**
+     * The number of times this letter, from 'a' to 'z', appears in this word.
+     */
+    public int count(int word, char letter) {
+        return histograms[NUMBER_OF_LETTERS * word + letter - 'a'];
+    }
+
+    /**
+     * A copy of the histogram of the letters of this word, indexed from 'a' to 'z'.
+     */
+    public byte[] histogram(int word) {
+        int offset = NUMBER_OF_LETTERS * word;
+        return Arrays.copyOfRange(histograms, offset, offset + NUMBER_OF_LETTERS);
+    }
+
+    public int score(int word) {
+        return scores[word];
+    }
+
+    public int blanks(int word) {
+        return blanks[word];
+    }
+
+    public int scoreWithBlanks(int word) {
+        return scoresWithBlanks[word];
+    }
+
+    /**
+     * The best score of this word played as the first move, or -1 if it has more letters than the rack.
+     */
+    public int firstMoveScore(int word) {
+        return firstMoveScores[word];
+    }
+}
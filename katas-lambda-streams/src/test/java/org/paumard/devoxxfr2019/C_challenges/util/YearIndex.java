@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 José Paumard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.paumard.devoxxfr2019.C_challenges.util;
+
+import org.paumard.devoxxfr2019.C_challenges.model.IndexedMovie;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index of the movies by release year. The years of the database only span from 1916 to 2004,
+ * so the index is a dense histogram, keyed by year - firstYear.
+ * <p/>
+ * The ids of the movies, that is their index in the list the YearIndex is built from, are sorted
+ * by year, so that the movies of a year, or of a range of years, are a contiguous range of that array.
+ * Counting the movies of a year or of a range of years is O(1), listing them is O(number of movies).
+ */
+public class YearIndex {
+
+    private final int firstYear;
+    private final int[] offsets;
+    private final int[] movieIds;
+    private final int numberOfYears;
+
+    private YearIndex(int firstYear, int[] offsets, int[] movieIds) {
+        this.firstYear = firstYear;
+        this.offsets = offsets;
+        this.movieIds = movieIds;
+        int numberOfYears = 0;
+        for (int i = 0; i < offsets.length - 1; i++) {
+            if (offsets[i + 1] > offsets[i]) {
+                numberOfYears++;
+            }
+        }
+        this.numberOfYears = numberOfYears;
+    }
+
+    /**
+     * Builds the index with a counting sort of the movies by year, that keeps the order of the
+     * movie ids within a year.
+     */
+    public static YearIndex of(List<IndexedMovie> movies) {
+        if (movies.isEmpty()) {
+            return new YearIndex(0, new int[1], new int[0]);
+        }
+        int firstYear = Integer.MAX_VALUE, lastYear = Integer.MIN_VALUE;
+        for (IndexedMovie movie : movies) {
+            firstYear = Math.min(firstYear, movie.releaseYear());
+            lastYear = Math.max(lastYear, movie.releaseYear());
+        }
+        int[] offsets = new int[lastYear - firstYear + 2];
+        for (IndexedMovie movie : movies) {
+            offsets[movie.releaseYear() - firstYear + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        int[] movieIds = new int[movies.size()];
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int movieId = 0; movieId < movies.size(); movieId++) {
+            movieIds[next[movies.get(movieId).releaseYear() - firstYear]++] = movieId;
+        }
+        return new YearIndex(firstYear, offsets, movieIds);
+    }
+
+    public int firstYear() {
+        return firstYear;
+    }
+
+    public int lastYear() {
+        return firstYear + offsets.length - 2;
+    }
+
+    /**
+     * The number of years that have at least one movie.
+     */
+    public int numberOfYears() {
+        return numberOfYears;
+    }
+
+    public int numberOfMovies(int year) {
+        return numberOfMoviesBetween(year, year);
+    }
+
+    /**
+     * The number of movies released from year1 to year2, both included.
+     */
+    public int numberOfMoviesBetween(int year1, int year2) {
+        return Math.max(0, offset(year2 + 1) - offset(year1));
+    }
+
+    /**
+     * The year with the greatest number of movies, the earliest one winning ties.
+     */
+    public int yearWithMostMovies() {
+        int bestYear = firstYear;
+        for (int year = firstYear + 1; year <= lastYear(); year++) {
+            if (numberOfMovies(year) > numberOfMovies(bestYear)) {
+                bestYear = year;
+            }
+        }
+        return bestYear;
+    }
+
+    /**
+     * The ids of the movies released this year.
+     */
+    public int[] movies(int year) {
+        return moviesBetween(year, year);
+    }
+
+    /**
+     * The ids of the movies released from year1 to year2, both included, sorted by year.
+     */
+    public int[] moviesBetween(int year1, int year2) {
+        return Arrays.copyOfRange(movieIds, offset(year1), Math.max(offset(year1), offset(year2 + 1)));
+    }
+
+    /**
+     * The offset in the sorted movie ids of the first movie of that year, clamped
+     * to the years of this index.
+     */
+    private int offset(int year) {
+        int index = Math.max(0, Math.min(year - firstYear, offsets.length - 1));
+        return offsets[index];
+    }
+}